@@ -0,0 +1,95 @@
+package de.bright_side.beam;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Random;
+
+/**
+ * Creates the payloads for the benchmarks. Large payloads are provided as streams that repeat a small pattern so that
+ * payloads of up to several GB can be processed without holding them in memory.
+ * 
+ * @author Philip Heyse
+ *
+ */
+class BenchmarkData {
+	protected static final int PATTERN_LENGTH = 64 * 1024;
+	private static final long SEED = 4711;
+	
+	public static byte[] createBytes(int length) {
+		byte[] result = new byte[length];
+		new Random(SEED).nextBytes(result);
+		return result;
+	}
+
+	public static String createText(int length) {
+		StringBuilder result = new StringBuilder(length);
+		Random random = new Random(SEED);
+		for (int i = 0; i < length; i++) {
+			result.append((char)('a' + random.nextInt(26)));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @return a stream that provides the encrypted form of a plain text consisting of the given number of full blocks and a last block. 
+	 * As blocks are encrypted independently of each other, the encrypted full block can simply be repeated.
+	 */
+	public static InputStream createEncryptedInputStream(byte[] encryptedFullBlock, long numberOfFullBlocks, byte[] encryptedLastBlock) {
+		InputStream fullBlocks = new RepeatingInputStream(encryptedFullBlock, numberOfFullBlocks * encryptedFullBlock.length);
+		return new SequenceInputStream(fullBlocks, new ByteArrayInputStream(encryptedLastBlock));
+	}
+
+	/**
+	 * input stream that provides the given pattern again and again until the given length is reached
+	 */
+	protected static class RepeatingInputStream extends InputStream {
+		private byte[] pattern;
+		private int patternPos = 0;
+		private long remainingLength;
+
+		protected RepeatingInputStream(byte[] pattern, long length) {
+			this.pattern = pattern;
+			this.remainingLength = length;
+		}
+
+		@Override
+		public int read() {
+			byte[] result = new byte[1];
+			int amountRead = read(result, 0, 1);
+			if (amountRead < 0) {
+				return -1;
+			}
+			return result[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] output, int off, int len) {
+			if (remainingLength <= 0) {
+				return -1;
+			}
+			int lengthToRead = (int)Math.min(Math.min(len, remainingLength), pattern.length - patternPos);
+			System.arraycopy(pattern, patternPos, output, off, lengthToRead);
+			patternPos += lengthToRead;
+			if (patternPos >= pattern.length) {
+				patternPos = 0;
+			}
+			remainingLength -= lengthToRead;
+			return lengthToRead;
+		}
+	}
+
+	/**
+	 * output stream that ignores all data
+	 */
+	protected static class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
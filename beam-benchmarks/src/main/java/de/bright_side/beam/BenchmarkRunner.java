@@ -0,0 +1,34 @@
+package de.bright_side.beam;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the usual JMH command line options (e.g. "-p blockLength=1024" or "-prof stack")
+ * and adds the GC profiler if no profiler was given so that the allocation rate is always reported next to the throughput.
+ * 
+ * @author Philip Heyse
+ *
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		if (commandLineOptions.shouldHelp()) {
+			commandLineOptions.showHelp();
+			return;
+		}
+		ChainedOptionsBuilder optionsBuilder = new OptionsBuilder().parent(commandLineOptions);
+		if (commandLineOptions.getProfilers().isEmpty()) {
+			optionsBuilder.addProfiler(GCProfiler.class);
+		}
+		Runner runner = new Runner(optionsBuilder.build());
+		if (commandLineOptions.shouldList()) {
+			runner.list();
+			return;
+		}
+		runner.run();
+	}
+}
@@ -0,0 +1,79 @@
+package de.bright_side.beam;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the in-memory API: encrypt/decrypt of byte arrays and of strings (hex-strings as encrypted form).
+ * The payloads are held in memory which is why the largest payload is smaller than in the StreamBenchmark.
+ * 
+ * @author Philip Heyse
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ByteArrayBenchmark {
+	private static final String PASSWORD = "theBenchmarkPassword";
+
+	@Param({"32", "1024", "8192", "65535"})
+	public int blockLength;
+
+	@Param({"16", "1024", "1048576", "67108864"})
+	public int payloadSize;
+
+	private Beam beam;
+	private byte[] plainBytes;
+	private byte[] encryptedBytes;
+	private String plainText;
+	private String encryptedText;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		beam = new Beam(PASSWORD, blockLength);
+		beam.init();
+		plainBytes = BenchmarkData.createBytes(payloadSize);
+		encryptedBytes = beam.encrypt(plainBytes);
+		plainText = BenchmarkData.createText(payloadSize);
+		encryptedText = beam.encrypt(plainText);
+	}
+
+	@Benchmark
+	public byte[] encryptBytes(Throughput throughput) throws Exception {
+		throughput.add(payloadSize);
+		return beam.encrypt(plainBytes);
+	}
+
+	@Benchmark
+	public byte[] decryptBytes(Throughput throughput) throws Exception {
+		throughput.add(payloadSize);
+		return beam.decrypt(encryptedBytes);
+	}
+
+	@Benchmark
+	public String encryptString(Throughput throughput) throws Exception {
+		throughput.add(payloadSize);
+		return beam.encrypt(plainText);
+	}
+
+	@Benchmark
+	public String decryptString(Throughput throughput) throws Exception {
+		throughput.add(payloadSize);
+		return beam.decrypt(encryptedText);
+	}
+}
@@ -0,0 +1,63 @@
+package de.bright_side.beam;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Initialization cost of a Beam instance split into its parts: creating the key from the password, creating the 
+ * position switch map from the key and the complete Beam.init().
+ * 
+ * @author Philip Heyse
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InitBenchmark {
+	@Param({"8", "32", "128", "512", "2048"})
+	public int passwordLength;
+
+	@Param({"32", "1024", "8192", "65535"})
+	public int blockLength;
+
+	private byte[] password;
+	private byte[] key;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		password = InitCostReport.createPassword(passwordLength);
+		key = new KeyCreator().create(password);
+	}
+
+	@Benchmark
+	public byte[] createKey() {
+		return new KeyCreator().create(password);
+	}
+
+	@Benchmark
+	public int[] createPosSwitchMap() {
+		return new PosSwitchMapCreator().create(key, blockLength);
+	}
+
+	@Benchmark
+	public Beam init() throws Exception {
+		Beam result = new Beam(password, blockLength);
+		result.init();
+		return result;
+	}
+}
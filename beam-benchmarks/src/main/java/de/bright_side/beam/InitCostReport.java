@@ -0,0 +1,137 @@
+package de.bright_side.beam;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the initialization time and the retained heap of Beam instances for a grid of password lengths and block lengths
+ * and prints the result as a table that can be charted (tab separated values).
+ * The grid and the budgets are configured via system properties. The defaults are the same values that the pom of this module uses:
+ * <ul>
+ * <li>beam.report.passwordLengths: comma separated password lengths, default 8 to 2048</li>
+ * <li>beam.report.blockLengths: comma separated block lengths, default 32 to 65535</li>
+ * <li>beam.budget.initMillis: maximum allowed init time (median) of any configuration, 0 = no budget, default 100</li>
+ * <li>beam.budget.retainedBytes: maximum allowed retained heap of an initialized instance in any configuration, 0 = no budget, default 1 MiB</li>
+ * </ul>
+ * The process exits with a status other than 0 if a budget is exceeded so that the build fails.
+ * 
+ * @author Philip Heyse
+ *
+ */
+public class InitCostReport {
+	private static final String DEFAULT_PASSWORD_LENGTHS = "8,16,32,64,128,256,512,2048";
+	private static final String DEFAULT_BLOCK_LENGTHS = "32,256,1024,8192,65535";
+	private static final long DEFAULT_INIT_MILLIS_BUDGET = 100;
+	private static final long DEFAULT_RETAINED_BYTES_BUDGET = 1024 * 1024;
+	private static final int WARMUP_RUNS = 2;
+	private static final int MEASURED_RUNS = 5;
+	private static final int EXIT_STATUS_BUDGET_EXCEEDED = 1;
+	private static final long SEED = 4711;
+	private static final double NANOS_PER_MILLI = 1000000d;
+	
+	/** keeps the measured instance reachable so that the JIT cannot drop it before the heap is measured*/
+	private static volatile Beam retainedBeam;
+
+	public static void main(String[] args) throws Exception {
+		List<Integer> passwordLengths = readIntList("beam.report.passwordLengths", DEFAULT_PASSWORD_LENGTHS);
+		List<Integer> blockLengths = readIntList("beam.report.blockLengths", DEFAULT_BLOCK_LENGTHS);
+		long initMillisBudget = Long.getLong("beam.budget.initMillis", DEFAULT_INIT_MILLIS_BUDGET);
+		long retainedBytesBudget = Long.getLong("beam.budget.retainedBytes", DEFAULT_RETAINED_BYTES_BUDGET);
+
+		List<String> budgetViolations = new ArrayList<>();
+		System.out.println("passwordLength\tblockLength\tinitMillis\tretainedBytes");
+		for (int passwordLength: passwordLengths) {
+			for (int blockLength: blockLengths) {
+				byte[] password = createPassword(passwordLength);
+				double initMillis = measureInitMillis(password, blockLength);
+				long retainedBytes = measureRetainedBytes(password, blockLength);
+				System.out.println(passwordLength + "\t" + blockLength + "\t" + String.format("%.3f", initMillis) + "\t" + retainedBytes);
+				
+				if ((initMillisBudget > 0) && (initMillis > initMillisBudget)) {
+					budgetViolations.add("init time of " + String.format("%.3f", initMillis) + " ms exceeds the budget of " + initMillisBudget 
+							+ " ms (password length = " + passwordLength + ", block length = " + blockLength + ")");
+				}
+				if ((retainedBytesBudget > 0) && (retainedBytes > retainedBytesBudget)) {
+					budgetViolations.add("retained heap of " + retainedBytes + " bytes exceeds the budget of " + retainedBytesBudget 
+							+ " bytes (password length = " + passwordLength + ", block length = " + blockLength + ")");
+				}
+			}
+		}
+		
+		if (!budgetViolations.isEmpty()) {
+			for (String i: budgetViolations) {
+				System.err.println("Budget exceeded: " + i);
+			}
+			System.exit(EXIT_STATUS_BUDGET_EXCEEDED);
+		}
+	}
+
+	protected static byte[] createPassword(int length) {
+		//: printable characters only so the digit sum stays positive as for typical passwords
+		byte[] result = new byte[length];
+		Random random = new Random(SEED);
+		for (int i = 0; i < length; i++) {
+			result[i] = (byte)('!' + random.nextInt('~' - '!'));
+		}
+		return result;
+	}
+
+	/**
+	 * @return median of the measured init times in milliseconds
+	 */
+	private static double measureInitMillis(byte[] password, int blockLength) throws Exception {
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			new Beam(password, blockLength).init();
+		}
+		double[] results = new double[MEASURED_RUNS];
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			Beam beam = new Beam(password, blockLength);
+			long startTime = System.nanoTime();
+			beam.init();
+			results[i] = (System.nanoTime() - startTime) / NANOS_PER_MILLI;
+		}
+		Arrays.sort(results);
+		return results[MEASURED_RUNS / 2];
+	}
+
+	/**
+	 * @return median of the measured differences of the used heap before and after init. The heap is measured after a GC which
+	 * is only reliable with a stop-the-world collector such as -XX:+UseSerialGC
+	 */
+	private static long measureRetainedBytes(byte[] password, int blockLength) throws Exception {
+		long[] results = new long[MEASURED_RUNS];
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			//: objects of the previous run do not always get collected by the first GC so the heap is measured twice
+			getUsedHeapAfterGc();
+			long usedBefore = getUsedHeapAfterGc();
+			retainedBeam = new Beam(password, blockLength);
+			retainedBeam.init();
+			long usedAfter = getUsedHeapAfterGc();
+			retainedBeam = null;
+			results[i] = Math.max(0, usedAfter - usedBefore);
+		}
+		Arrays.sort(results);
+		return results[MEASURED_RUNS / 2];
+	}
+
+	private static long getUsedHeapAfterGc() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		long result = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(20);
+			result = Math.min(result, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return result;
+	}
+
+	private static List<Integer> readIntList(String propertyName, String defaultValue) {
+		List<Integer> result = new ArrayList<>();
+		for (String i: System.getProperty(propertyName, defaultValue).split(",")) {
+			result.add(Integer.valueOf(i.trim()));
+		}
+		return result;
+	}
+}
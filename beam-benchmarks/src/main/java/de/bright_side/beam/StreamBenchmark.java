@@ -0,0 +1,103 @@
+package de.bright_side.beam;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the stream API: encrypt/decrypt from input stream to output stream and the wrapping streams 
+ * (getEncryptedOutputStream/getDecryptedInputStream). The payloads are generated while reading so the memory use 
+ * does not depend on the payload size.
+ * 
+ * @author Philip Heyse
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class StreamBenchmark {
+	private static final String PASSWORD = "theBenchmarkPassword";
+
+	@Param({"32", "1024", "8192", "65535"})
+	public int blockLength;
+
+	@Param({"16", "1024", "1048576", "67108864", "1073741824"})
+	public long payloadSize;
+
+	private Beam beam;
+	private byte[] pattern;
+	private byte[] readBuffer;
+	private byte[] encryptedFullBlock;
+	private byte[] encryptedLastBlock;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		beam = new Beam(PASSWORD, blockLength);
+		beam.init();
+		pattern = BenchmarkData.createBytes(BenchmarkData.PATTERN_LENGTH);
+		readBuffer = new byte[BenchmarkData.PATTERN_LENGTH];
+		encryptedFullBlock = beam.encrypt(BenchmarkData.createBytes(blockLength));
+		encryptedLastBlock = beam.encrypt(BenchmarkData.createBytes((int)(payloadSize % blockLength)));
+	}
+
+	@Benchmark
+	public void encryptStream(Throughput throughput) throws Exception {
+		beam.encrypt(new BenchmarkData.RepeatingInputStream(pattern, payloadSize), new BenchmarkData.NullOutputStream(), null);
+		throughput.add(payloadSize);
+	}
+
+	@Benchmark
+	public void decryptStream(Throughput throughput) throws Exception {
+		InputStream encryptedInput = createEncryptedInputStream();
+		beam.decrypt(encryptedInput, new BenchmarkData.NullOutputStream(), null);
+		throughput.add(payloadSize);
+	}
+
+	@Benchmark
+	public void encryptedOutputStream(Throughput throughput) throws Exception {
+		OutputStream output = beam.getEncryptedOutputStream(new BenchmarkData.NullOutputStream(), null);
+		long remainingLength = payloadSize;
+		while (remainingLength > 0) {
+			int lengthToWrite = (int)Math.min(remainingLength, pattern.length);
+			output.write(pattern, 0, lengthToWrite);
+			remainingLength -= lengthToWrite;
+		}
+		output.close();
+		throughput.add(payloadSize);
+	}
+
+	@Benchmark
+	public long decryptedInputStream(Throughput throughput) throws Exception {
+		InputStream encryptedInput = createEncryptedInputStream();
+		InputStream input = beam.getDecryptedInputStream(encryptedInput, null);
+		long result = 0;
+		int readLength = input.read(readBuffer, 0, readBuffer.length);
+		while (readLength >= 0) {
+			result += readLength;
+			readLength = input.read(readBuffer, 0, readBuffer.length);
+		}
+		input.close();
+		throughput.add(payloadSize);
+		return result;
+	}
+
+	private InputStream createEncryptedInputStream() {
+		return BenchmarkData.createEncryptedInputStream(encryptedFullBlock, payloadSize / blockLength, encryptedLastBlock);
+	}
+}
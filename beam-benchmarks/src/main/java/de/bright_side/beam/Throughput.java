@@ -0,0 +1,31 @@
+package de.bright_side.beam;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the processed plain-text megabytes. As JMH reports auxiliary counters as a rate, the "megabytes" result of
+ * a benchmark run in throughput mode is the throughput in MB/s.
+ * 
+ * @author Philip Heyse
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+	private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+	public double megabytes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		megabytes = 0;
+	}
+
+	protected void add(long bytes) {
+		megabytes += bytes / BYTES_PER_MEGABYTE;
+	}
+}
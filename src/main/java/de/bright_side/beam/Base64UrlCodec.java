@@ -0,0 +1,63 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+
+/**
+ * URL-safe Base64 ('-' and '_' instead of '+' and '/') without padding characters, so the text can be used in URLs, file names and JSON
+ * without escaping.
+ *
+ * @author Philip Heyse
+ *
+ */
+class Base64UrlCodec extends TextCodec {
+	private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	private static final int[] DECODE_TABLE = createDecodeTable(ALPHABET);
+
+	@Override
+	public int getBytesPerGroup() {
+		return 3;
+	}
+
+	@Override
+	public int getCharsPerGroup() {
+		return 4;
+	}
+
+	@Override
+	protected void encodeGroup(byte[] data, int offset, int length, char[] output, int outputOffset) {
+		int value = (data[offset] & 0xFF) << 16;
+		if (length > 1) {
+			value |= (data[offset + 1] & 0xFF) << 8;
+		}
+		if (length > 2) {
+			value |= data[offset + 2] & 0xFF;
+		}
+		output[outputOffset] = ALPHABET[(value >> 18) & 0x3F];
+		output[outputOffset + 1] = ALPHABET[(value >> 12) & 0x3F];
+		if (length > 1) {
+			output[outputOffset + 2] = ALPHABET[(value >> 6) & 0x3F];
+		}
+		if (length > 2) {
+			output[outputOffset + 3] = ALPHABET[value & 0x3F];
+		}
+	}
+
+	@Override
+	protected void decodeGroup(char[] chars, int offset, int length, byte[] output, int outputOffset) throws IOException {
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			value <<= 6;
+			if (i < length) {
+				value |= decodeChar(DECODE_TABLE, chars[offset + i]);
+			}
+		}
+		output[outputOffset] = (byte)(value >> 16);
+		if (length > 2) {
+			output[outputOffset + 1] = (byte)(value >> 8);
+		}
+		if (length > 3) {
+			output[outputOffset + 2] = (byte)value;
+		}
+	}
+
+}
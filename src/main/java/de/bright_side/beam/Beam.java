@@ -1,12 +1,30 @@
 package de.bright_side.beam;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.util.SortedMap;
+import java.io.OutputStreamWriter;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * An instance may be used by several threads at the same time once the optional settings have been made.
  * 
  * @author Philip Heyse
  *
@@ -18,14 +36,30 @@ public class Beam {
 	private static final int MINIMUM_BLOCK_LENGTH = 32;
 	private static final int MAXIMUM_BLOCK_LENGTH = VALUES_IN_BYTE * VALUES_IN_BYTE; //: so the block length can be stored in 2 bytes
 	private static final int MINIMUM_PASSWORD_LENGTH = 8;
+	private static final int DEFAULT_MAXIMUM_BLOCKS_IN_FLIGHT = 256;
+	/** the encrypt stream methods collect about this many plain bytes and write the encrypted blocks in one call*/
+	private static final int STREAM_BATCH_LENGTH = 64 * 1024;
+	/** in compact mode the length of a block that is not full is rounded up to a multiple of this value*/
+	private static final int COMPACT_BLOCK_GRANULARITY = 16;
 	
 	
 	private byte[] password;
 	private int blockLength;
-	private byte[] key = null;
-	private int digitSum = 0;
-	private SortedMap<Integer, Integer> posSwitchMap = null;
-	private RandomNumberGenerator randomNumberGenerator = new DefaultRandomNumberGenerator();
+	/** created once by init and never changed afterwards. Volatile so that all threads see the completely created instance*/
+	private volatile KeyMaterial keyMaterial = null;
+	private volatile RandomNumberGenerator randomNumberGenerator = new DefaultRandomNumberGenerator();
+	private volatile int threadCount = Runtime.getRuntime().availableProcessors();
+	private volatile boolean parallelStreamProcessing = false;
+	private volatile int maximumBlocksInFlight = DEFAULT_MAXIMUM_BLOCKS_IN_FLIGHT;
+	private volatile BeamFlushPolicy flushPolicy = BeamFlushPolicy.KEEP_BUFFERING;
+	private volatile BeamTextEncoding textEncoding = BeamTextEncoding.HEX;
+	private volatile boolean compactMode = false;
+	/** key material for the shorter blocks of the compact mode and for the accepted block lengths of format headers by block length. 
+	 * Created when a length is used the first time and shared with the instances created by getBeamForHeader*/
+	private Map<Integer, KeyMaterial> otherKeyMaterials = new ConcurrentHashMap<>();
+	private volatile boolean formatHeader = false;
+	/** block lengths of format headers that are accepted in addition to the block length of this instance*/
+	private volatile Set<Integer> acceptedBlockLengths = Collections.emptySet();
 
 	/**
 	 * initialized the Beam class with the given password and the default block length (Beam.DEFAULT_BLOCK_LENGTH)
@@ -75,6 +109,19 @@ public class Beam {
 		this.blockLength = blockLength;
 	}
 
+	/**
+	 * creates an instance for data with a format header of the given block length. Password, settings and key material are taken from source
+	 */
+	private Beam(Beam source, int blockLength) throws Exception {
+		this(source.password, blockLength);
+		this.randomNumberGenerator = source.randomNumberGenerator;
+		this.threadCount = source.threadCount;
+		this.parallelStreamProcessing = source.parallelStreamProcessing;
+		this.maximumBlocksInFlight = source.maximumBlocksInFlight;
+		this.otherKeyMaterials = source.otherKeyMaterials;
+		this.keyMaterial = source.getKeyMaterial(blockLength);
+	}
+
 	/**
 	 * Optional method to provide a custom random number generator (e.g. for testing)
 	 * @param randomNumberGenerator must implement RandomNumberGenerator interface
@@ -87,6 +134,19 @@ public class Beam {
 		return randomNumberGenerator;
 	}
 
+	/**
+	 * Optional method to set the number of threads used by encryptFile and decryptFile and by the stream methods if parallel stream processing is enabled. 
+	 * Default is the number of available processors
+	 * @param threadCount must be at least 1
+	 * @throws Exception if threadCount is less than 1
+	 */
+	public void setThreadCount(int threadCount) throws Exception {
+		if (threadCount < 1) {
+			throw new Exception("Thread count must be at least 1 but was " + threadCount);
+		}
+		this.threadCount = threadCount;
+	}
+
 	
 	/**
      * It is optional to call this method. The method gets executed automatically when needed.
@@ -94,39 +154,203 @@ public class Beam {
 	 * 
 	 */
 	public void init() {
-		if (key != null) {
-			//: init has been called already
-			return;
+		getKeyMaterial();
+	}
+
+	/**
+	 * creates the key material on the first call. Later calls only read the volatile field without locking.
+	 */
+	private KeyMaterial getKeyMaterial() {
+		KeyMaterial result = keyMaterial;
+		if (result != null) {
+			return result;
+		}
+		synchronized (this) {
+			if (keyMaterial == null) {
+				keyMaterial = createKeyMaterial(blockLength);
+			}
+			return keyMaterial;
+		}
+	}
+
+	/**
+	 * returns the key material for blocks of the given length which is derived from the password the same way as for the normal block length
+	 */
+	private KeyMaterial getKeyMaterial(int length) {
+		if (length == blockLength) {
+			return getKeyMaterial();
+		}
+		return otherKeyMaterials.computeIfAbsent(length, key -> createKeyMaterial(length));
+	}
+
+	private KeyMaterial createKeyMaterial(int length) {
+		KeyMaterialCache keyMaterialCache = KeyMaterialCache.getSharedInstance();
+		if (keyMaterialCache.isEnabled()) {
+			return keyMaterialCache.get(password, length);
+		}
+		return new KeyMaterial(password, length);
+	}
+
+	/**
+	 * Optional method to share the result of init between all Beam instances with the same password and block length in this process.
+	 * The cache is disabled by default. The password is not stored in the cache but only an HMAC of it with a random key of this process is used to find the entries.
+	 * @param maximumBytes maximum estimated memory of all cache entries. If the limit is exceeded the least recently used entries are removed. 
+	 * 0 disables the cache and removes all entries
+	 */
+	public static void setKeyMaterialCacheSize(long maximumBytes) {
+		KeyMaterialCache.getSharedInstance().setMaximumWeight(maximumBytes);
+	}
+
+	/**
+	 * Optional method to select the text encoding of the encrypted data in encrypt(String), decrypt(String), encryptingWriter and decryptingReader.
+	 * Default is BeamTextEncoding.HEX. BASE64_URL and Z85 create shorter texts
+	 * @param textEncoding may not be null
+	 * @throws Exception if textEncoding is null
+	 */
+	public void setTextEncoding(BeamTextEncoding textEncoding) throws Exception {
+		if (textEncoding == null) {
+			throw new Exception("Text encoding may not be null");
 		}
-		key = new KeyCreator().create(password);
-		posSwitchMap = new PosSwitchMapCreator().create(key, blockLength);
-		digitSum = BeamUtil.getDigitSum(password);
+		this.textEncoding = textEncoding;
 	}
 
 	/**
-	 * encrypts the given string and returns the encrypted bytes as a hex-string
+	 * Optional method to create shorter encrypted data in encrypt(byte[]) and encrypt(String): a block that is not full is not padded to the 
+	 * block length but only to the next multiple of COMPACT_BLOCK_GRANULARITY (at least MINIMUM_BLOCK_LENGTH) and it is encrypted with 
+	 * a position switch table and key stream for this shorter length. decrypt(byte[]) and decrypt(String) must use the same setting. 
+	 * The streams, buffers, files and encryptInto/decryptInto always use full blocks. Default is false
+	 * @param compactMode true to create compact encrypted data
+	 */
+	public void setCompactMode(boolean compactMode) {
+		this.compactMode = compactMode;
+	}
+
+	/**
+	 * Optional method to write a format header in front of the encrypted data in encrypt(byte[]), encrypt(String), the encrypt stream methods 
+	 * and the streams of getEncryptedOutputStream, encryptingWriter and encryptingHexWriter. The header contains the block length and whether 
+	 * compact mode is used. The corresponding decrypt methods and streams read the header if it is present and use its block length and mode 
+	 * instead of the settings of this instance, so data with and without header can be decrypted. A block length in the header that differs from 
+	 * the block length of this instance must be accepted with setAcceptedBlockLengths. 
+	 * The buffer, file and channel methods and encryptInto/decryptInto neither write nor read the header, except getDecryptedLength(Path|FileChannel): 
+	 * it reads the header and skips reading the headers of all blocks if the header states that the data contains no blocks that are not full 
+	 * before the last block. Default is false
+	 * @param formatHeader true to write the format header
+	 */
+	public void setFormatHeader(boolean formatHeader) {
+		this.formatHeader = formatHeader;
+	}
+
+	protected boolean isFormatHeader() {
+		return formatHeader;
+	}
+
+	/**
+	 * Optional method to accept format headers (see setFormatHeader) with other block lengths than the one of this instance when decrypting. 
+	 * Data with a format header that has another block length is rejected. The key material of each accepted block length is kept 
+	 * once it is used. Default is no additional block length
+	 * @param blockLengths the additional block lengths. Each must be a valid block length (see constructor)
+	 * @throws Exception if one of the block lengths is not valid
+	 */
+	public void setAcceptedBlockLengths(int... blockLengths) throws Exception {
+		Set<Integer> result = new HashSet<>();
+		for (int acceptedBlockLength: blockLengths) {
+			if ((acceptedBlockLength < MINIMUM_BLOCK_LENGTH) || (acceptedBlockLength > MAXIMUM_BLOCK_LENGTH)) {
+				throw new Exception("Accepted block length must be between " + MINIMUM_BLOCK_LENGTH + " and " + MAXIMUM_BLOCK_LENGTH + " but was " + acceptedBlockLength);
+			}
+			result.add(acceptedBlockLength);
+		}
+		this.acceptedBlockLengths = Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * returns the instance that decrypts data with the given header: this instance if the block length is the same, otherwise a new instance
+	 * with the same password and settings for the block length of the header that shares the key material of this instance
+	 * @throws Exception if the block length of the header is not accepted (see setAcceptedBlockLengths)
+	 */
+	protected Beam getBeamForHeader(FormatHeader header) throws Exception {
+		int headerBlockLength = header.getBlockLength();
+		if (headerBlockLength == blockLength) {
+			return this;
+		}
+		if (!acceptedBlockLengths.contains(headerBlockLength)) {
+			throw new Exception("Block length " + headerBlockLength + " of the format header is not accepted. Block length is " + blockLength 
+					+ ", accepted block lengths are " + acceptedBlockLengths);
+		}
+		return new Beam(this, headerBlockLength);
+	}
+
+	/**
+	 * encrypts the given string and returns the encrypted bytes as text in the selected text encoding (hex-string by default, see setTextEncoding)
 	 * @param input string to encrypt
-	 * @return encrypted string as hex-string
+	 * @return encrypted string
 	 * @throws Exception if an error occurs
 	 */
 	public String encrypt(String input) throws Exception {
 		byte[] inputBytes = BeamUtil.stringToByteArray(input);
 		byte[] outputBytes = encrypt(inputBytes);
-		return BeamUtil.byteArrayToHexString(outputBytes);
+		return textEncoding.getCodec().encodeToString(outputBytes);
 	}
 
 	/**
-	 * encrypts the given hex-string and returns the plain-text string
-	 * @param input string to decrypt as hex-string
+	 * decrypts the given text in the selected text encoding (hex-string by default, see setTextEncoding) and returns the plain-text string
+	 * @param input string to decrypt
 	 * @return decrypted string
 	 * @throws Exception if an error occurs
 	 */
 	public String decrypt(String input) throws Exception {
-		byte[] inputBytes = BeamUtil.hexStringToByteArray(input);
+		byte[] inputBytes = textEncoding.getCodec().decode(input);
 		byte[] outputBytes = decrypt(inputBytes);
 		return BeamUtil.byteArrayToString(outputBytes);
 	}
 
+	/**
+	 * returns a writer that encrypts all text written to it and writes the encrypted bytes as hex-string to output. The result is the same as 
+	 * encrypt(String) with BeamTextEncoding.HEX for the whole text, but only a few blocks are kept in memory. Closing the writer writes the last block and closes output.
+	 * flush() follows the flush policy (see setFlushPolicy)
+	 * @param output writer for the encrypted hex-string
+	 * @return writer for the plain text
+	 */
+	public Writer encryptingHexWriter(Writer output) {
+		return createEncryptingWriter(output, BeamTextEncoding.HEX);
+	}
+
+	/**
+	 * returns a reader that provides the plain text of the encrypted hex-string read from input. The result is the same as decrypt(String)
+	 * with BeamTextEncoding.HEX for the whole hex-string, but only a few blocks are kept in memory. Closing the reader closes input.
+	 * @param input reader for the encrypted hex-string
+	 * @return reader for the plain text
+	 */
+	public Reader decryptingHexReader(Reader input) {
+		return createDecryptingReader(input, BeamTextEncoding.HEX);
+	}
+
+	/**
+	 * like encryptingHexWriter but with the selected text encoding (see setTextEncoding). With BASE64_URL and Z85 the last bytes that do not fill 
+	 * a whole group of the encoding are only written when the writer is closed, even if flush is called
+	 * @param output writer for the encrypted text
+	 * @return writer for the plain text
+	 */
+	public Writer encryptingWriter(Writer output) {
+		return createEncryptingWriter(output, textEncoding);
+	}
+
+	/**
+	 * like decryptingHexReader but with the selected text encoding (see setTextEncoding)
+	 * @param input reader for the encrypted text
+	 * @return reader for the plain text
+	 */
+	public Reader decryptingReader(Reader input) {
+		return createDecryptingReader(input, textEncoding);
+	}
+
+	private Writer createEncryptingWriter(Writer output, BeamTextEncoding encoding) {
+		return new OutputStreamWriter(getEncryptedOutputStream(new TextEncodingOutputStream(output, encoding.getCodec()), null), StandardCharsets.UTF_8);
+	}
+
+	private Reader createDecryptingReader(Reader input, BeamTextEncoding encoding) {
+		return new InputStreamReader(getDecryptedInputStream(new TextDecodingInputStream(input, encoding.getCodec()), null), StandardCharsets.UTF_8);
+	}
+
 	/**
 	 * encrypts the provided byte array
 	 * @param input byte array to be encrypted
@@ -134,10 +358,14 @@ public class Beam {
 	 * @throws Exception if an error occurs
 	 */
 	public byte[] encrypt(byte[] input) throws Exception {
-		ByteArrayOutputStream result = new ByteArrayOutputStream();
-		ByteArrayInputStream inputStream = new ByteArrayInputStream(input);
-		encrypt(inputStream, result, null);
-		return result.toByteArray();
+		boolean compact = compactMode;
+		int headerLength = formatHeader ? FormatHeader.LENGTH : 0;
+		byte[] result = new byte[toArrayLength(headerLength + getEncryptedLength(input.length, compact))];
+		if (headerLength > 0) {
+			FormatHeader.write(blockLength, compact, false, result, 0);
+		}
+		encryptInto(input, 0, input.length, result, headerLength, compact);
+		return result;
 	}
 	
 	/**
@@ -147,36 +375,467 @@ public class Beam {
 	 * @throws Exception if an error occurs
 	 */
 	public byte[] decrypt(byte[] input) throws Exception {
-		ByteArrayOutputStream result = new ByteArrayOutputStream();
-		ByteArrayInputStream inputStream = new ByteArrayInputStream(input);
-		decrypt(inputStream, result, null);
-		return result.toByteArray();
+		FormatHeader header = FormatHeader.read(input, 0, input.length);
+		if (header != null) {
+			return getBeamForHeader(header).decrypt(input, header.getHeaderLength(), header.isCompact());
+		}
+		return decrypt(input, 0, compactMode);
+	}
+
+	private byte[] decrypt(byte[] input, int offset, boolean compact) throws Exception {
+		int length = input.length - offset;
+		byte[] result = new byte[getDecryptedLength(input, offset, length, compact)];
+		decryptInto(input, offset, length, result, 0, compact);
+		return result;
+	}
+	
+	/**
+	 * returns the length of the encrypted data for plain data of the given length
+	 * @param plainLength length of the plain data
+	 * @return length of the encrypted data
+	 */
+	public long getEncryptedLength(long plainLength) {
+		return getEncryptedLength(plainLength, false);
+	}
+
+	private long getEncryptedLength(long plainLength, boolean compact) {
+		long numberOfBlocks = (plainLength + blockLength - 1) / blockLength;
+		int lastDataLength = (int)(plainLength - (numberOfBlocks - 1) * blockLength);
+		if ((!compact) || (numberOfBlocks == 0) || (lastDataLength == blockLength)) {
+			return numberOfBlocks * (LENGTH_OF_BLOCK_SIZE_BYTES + blockLength);
+		}
+		return (numberOfBlocks - 1) * (LENGTH_OF_BLOCK_SIZE_BYTES + blockLength) + LENGTH_OF_BLOCK_SIZE_BYTES + getEncryptedBlockLength(lastDataLength, true);
+	}
+
+	/**
+	 * @return the length of the encrypted block without header that contains dataLength bytes
+	 */
+	private int getEncryptedBlockLength(int dataLength, boolean compact) {
+		if ((!compact) || (dataLength >= blockLength)) {
+			return blockLength;
+		}
+		int roundedLength = (dataLength + COMPACT_BLOCK_GRANULARITY - 1) / COMPACT_BLOCK_GRANULARITY * COMPACT_BLOCK_GRANULARITY;
+		return Math.min(blockLength, Math.max(MINIMUM_BLOCK_LENGTH, roundedLength));
+	}
+
+	/**
+	 * encrypts len bytes of src starting at srcOff and writes the result to dst starting at dstOff. 
+	 * Apart from the random bytes to fill the last block no memory is allocated. src and dst may not overlap.
+	 * @param src the plain data
+	 * @param srcOff start of the plain data in src
+	 * @param len length of the plain data
+	 * @param dst array to write the encrypted data to. It must provide at least getEncryptedLength(len) bytes starting at dstOff
+	 * @param dstOff position in dst where the encrypted data is written to
+	 * @return number of bytes written to dst
+	 * @throws Exception if an error occurs or dst is too small
+	 */
+	public int encryptInto(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws Exception {
+		return encryptInto(src, srcOff, len, dst, dstOff, false);
+	}
+
+	private int encryptInto(byte[] src, int srcOff, int len, byte[] dst, int dstOff, boolean compact) throws Exception {
+		long encryptedLength = getEncryptedLength(len, compact);
+		if (encryptedLength > dst.length - dstOff) {
+			throw new Exception("Encrypted data needs " + encryptedLength + " bytes, but destination only provides " + (dst.length - dstOff) + " bytes");
+		}
+		BlockEncryptor encryptor = createBlockEncryptor();
+		int srcPos = srcOff;
+		int srcEnd = srcOff + len;
+		int dstPos = dstOff;
+		while (srcPos < srcEnd) {
+			int dataLength = Math.min(blockLength, srcEnd - srcPos);
+			int encryptedBlockLength = getEncryptedBlockLength(dataLength, compact);
+			BeamUtil.write2BytesFromPosInt(dataLength, dst, dstPos);
+			dstPos += LENGTH_OF_BLOCK_SIZE_BYTES;
+			if (dataLength == blockLength) {
+				encryptor.process(src, srcPos, dst, dstPos);
+			} else {
+				//: fill rest of block with random numbers and encrypt the block where it is
+				System.arraycopy(src, srcPos, dst, dstPos, dataLength);
+				randomNumberGenerator.fill(dst, dstPos + dataLength, encryptedBlockLength - dataLength);
+				if (encryptedBlockLength == blockLength) {
+					encryptor.processInPlace(dst, dstPos);
+				} else {
+					getKeyMaterial(encryptedBlockLength).createBlockEncryptor().processInPlace(dst, dstPos);
+				}
+			}
+			srcPos += dataLength;
+			dstPos += encryptedBlockLength;
+		}
+		return dstPos - dstOff;
+	}
+
+	/**
+	 * returns the length of the given encrypted data after it would have been decrypted. Only the block headers are read.
+	 * @param src the encrypted data
+	 * @param srcOff start of the encrypted data in src
+	 * @param len length of the encrypted data
+	 * @return length of the decrypted data
+	 * @throws Exception if the encrypted data is corrupt
+	 */
+	public int getDecryptedLength(byte[] src, int srcOff, int len) throws Exception {
+		return getDecryptedLength(src, srcOff, len, false);
+	}
+
+	private int getDecryptedLength(byte[] src, int srcOff, int len, boolean compact) throws Exception {
+		if (compact) {
+			//: the length of each block depends on its header
+			int result = 0;
+			int srcPos = srcOff;
+			while (srcPos < srcOff + len) {
+				if (srcOff + len - srcPos < LENGTH_OF_BLOCK_SIZE_BYTES) {
+					throw new Exception("Encrypted data ends within a block header. Data is corrupt");
+				}
+				int dataLength = readDataLength(src, srcPos);
+				result += dataLength;
+				srcPos += LENGTH_OF_BLOCK_SIZE_BYTES + getEncryptedBlockLength(dataLength, true);
+			}
+			if (srcPos != srcOff + len) {
+				throw new Exception("Length of encrypted data (" + len + ") does not match the lengths in the block headers. Data is corrupt");
+			}
+			return result;
+		}
+		int encryptedBlockLength = LENGTH_OF_BLOCK_SIZE_BYTES + blockLength;
+		if (len % encryptedBlockLength != 0) {
+			throw new Exception("Length of encrypted data (" + len + ") is not a multiple of the encrypted block length " + encryptedBlockLength + ". Data is corrupt");
+		}
+		int result = 0;
+		for (int srcPos = srcOff; srcPos < srcOff + len; srcPos += encryptedBlockLength) {
+			result += readDataLength(src, srcPos);
+		}
+		return result;
+	}
+
+	/**
+	 * decrypts len bytes of src starting at srcOff and writes the result to dst starting at dstOff. No memory is allocated.
+	 * src and dst may not overlap.
+	 * @param src the encrypted data
+	 * @param srcOff start of the encrypted data in src
+	 * @param len length of the encrypted data
+	 * @param dst array to write the decrypted data to. It must provide at least getDecryptedLength(src, srcOff, len) bytes starting at dstOff
+	 * @param dstOff position in dst where the decrypted data is written to
+	 * @return number of bytes written to dst
+	 * @throws Exception if an error occurs, the encrypted data is corrupt or dst is too small
+	 */
+	public int decryptInto(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws Exception {
+		return decryptInto(src, srcOff, len, dst, dstOff, false);
+	}
+
+	private int decryptInto(byte[] src, int srcOff, int len, byte[] dst, int dstOff, boolean compact) throws Exception {
+		int decryptedLength = getDecryptedLength(src, srcOff, len, compact);
+		if (decryptedLength > dst.length - dstOff) {
+			throw new Exception("Decrypted data needs " + decryptedLength + " bytes, but destination only provides " + (dst.length - dstOff) + " bytes");
+		}
+		BlockDecryptor decryptor = createBlockDecryptor();
+		int dstPos = dstOff;
+		int srcPos = srcOff;
+		while (srcPos < srcOff + len) {
+			int dataLength = BeamUtil.getPosIntFrom2Bytes(src[srcPos], src[srcPos + 1]);
+			int encryptedBlockLength = getEncryptedBlockLength(dataLength, compact);
+			if (encryptedBlockLength == blockLength) {
+				decryptor.process(src, srcPos + LENGTH_OF_BLOCK_SIZE_BYTES, dataLength, dst, dstPos);
+			} else {
+				getKeyMaterial(encryptedBlockLength).createBlockDecryptor().process(src, srcPos + LENGTH_OF_BLOCK_SIZE_BYTES, dataLength, dst, dstPos);
+			}
+			srcPos += LENGTH_OF_BLOCK_SIZE_BYTES + encryptedBlockLength;
+			dstPos += dataLength;
+		}
+		return dstPos - dstOff;
 	}
 	
 	/**
-	 * encrypts all bytes available in input and writes the result to output 
+	 * encrypts the remaining bytes of src (from position to limit) and writes the result to dst starting at its position. 
+	 * Works with heap and direct buffers. The positions of both buffers are advanced by the number of bytes read and written.
+	 * src and dst may not overlap.
+	 * @param src the plain data
+	 * @param dst buffer to write the encrypted data to. It must have at least getEncryptedLength(src.remaining()) bytes remaining
+	 * @return number of bytes written to dst
+	 * @throws Exception if an error occurs or dst is too small
+	 */
+	public int encrypt(ByteBuffer src, ByteBuffer dst) throws Exception {
+		return (int)encrypt(new ByteBuffer[] {src}, new ByteBuffer[] {dst});
+	}
+
+	/**
+	 * decrypts the remaining bytes of src (from position to limit) and writes the result to dst starting at its position. 
+	 * Works with heap and direct buffers. The positions of both buffers are advanced by the number of bytes read and written.
+	 * src and dst may not overlap.
+	 * @param src the encrypted data
+	 * @param dst buffer to write the decrypted data to. It must have enough bytes remaining for the decrypted data
+	 * @return number of bytes written to dst
+	 * @throws Exception if an error occurs, the encrypted data is corrupt or dst is too small
+	 */
+	public int decrypt(ByteBuffer src, ByteBuffer dst) throws Exception {
+		return (int)decrypt(new ByteBuffer[] {src}, new ByteBuffer[] {dst});
+	}
+
+	/**
+	 * gathering and scattering variant of encrypt(ByteBuffer, ByteBuffer): the remaining bytes of all srcs are encrypted as one 
+	 * continuous sequence and written across the remaining space of dsts. 
+	 * Only blocks that span two destination buffers are staged in a temporary array of one block.
+	 * @param srcs the plain data
+	 * @param dsts buffers to write the encrypted data to
+	 * @return number of bytes written to dsts
+	 * @throws Exception if an error occurs or dsts are too small. In this case no buffer positions are changed
+	 */
+	public long encrypt(ByteBuffer[] srcs, ByteBuffer[] dsts) throws Exception {
+		ByteBufferSequence source = new ByteBufferSequence(srcs);
+		ByteBufferSequence destination = new ByteBufferSequence(dsts);
+		long encryptedLength = getEncryptedLength(source.remaining());
+		if (encryptedLength > destination.remaining()) {
+			throw new Exception("Encrypted data needs " + encryptedLength + " bytes, but destination only provides " + destination.remaining() + " bytes");
+		}
+		BlockEncryptor encryptor = createBlockEncryptor();
+		int encryptedBlockLength = LENGTH_OF_BLOCK_SIZE_BYTES + blockLength;
+		ByteBuffer stagingBuffer = null;
+		while (source.remaining() > 0) {
+			int dataLength = (int)Math.min(blockLength, source.remaining());
+			boolean blockFitsInDestination = destination.getCurrentRemaining() >= encryptedBlockLength;
+			ByteBuffer output;
+			int outputPos;
+			if (blockFitsInDestination) {
+				output = destination.getCurrentBuffer();
+				outputPos = destination.getCurrentPosition();
+			} else {
+				if (stagingBuffer == null) {
+					stagingBuffer = ByteBuffer.allocate(encryptedBlockLength);
+				}
+				output = stagingBuffer;
+				outputPos = 0;
+			}
+			BeamUtil.write2BytesFromPosInt(dataLength, output, outputPos);
+			int blockPos = outputPos + LENGTH_OF_BLOCK_SIZE_BYTES;
+			if ((dataLength == blockLength) && (source.getCurrentRemaining() >= blockLength)) {
+				encryptor.process(source.getCurrentBuffer(), source.getCurrentPosition(), output, blockPos);
+				source.skip(blockLength);
+			} else {
+				//: gather the data into the output block, fill the rest with random numbers if needed and encrypt the block where it is
+				source.get(output, blockPos, dataLength);
+				if ((dataLength < blockLength) && (output.hasArray())) {
+					randomNumberGenerator.fill(output.array(), output.arrayOffset() + blockPos + dataLength, blockLength - dataLength);
+				} else if (dataLength < blockLength) {
+					byte[] randomBytes = randomNumberGenerator.getRandomBytes(blockLength - dataLength);
+					for (int i = 0; i < randomBytes.length; i++) {
+						output.put(blockPos + dataLength + i, randomBytes[i]);
+					}
+				}
+				encryptor.processInPlace(output, blockPos);
+			}
+			if (blockFitsInDestination) {
+				destination.skip(encryptedBlockLength);
+			} else {
+				destination.put(stagingBuffer.array(), 0, encryptedBlockLength);
+			}
+		}
+		source.commit();
+		destination.commit();
+		return encryptedLength;
+	}
+
+	/**
+	 * gathering and scattering variant of decrypt(ByteBuffer, ByteBuffer): the remaining bytes of all srcs are decrypted as one 
+	 * continuous sequence and written across the remaining space of dsts. 
+	 * Only blocks that span two buffers are staged in a temporary array of one block.
+	 * @param srcs the encrypted data
+	 * @param dsts buffers to write the decrypted data to
+	 * @return number of bytes written to dsts
+	 * @throws Exception if an error occurs, the encrypted data is corrupt or dsts are too small. In this case no buffer positions are changed
+	 */
+	public long decrypt(ByteBuffer[] srcs, ByteBuffer[] dsts) throws Exception {
+		ByteBufferSequence source = new ByteBufferSequence(srcs);
+		ByteBufferSequence destination = new ByteBufferSequence(dsts);
+		long decryptedLength = getDecryptedLength(source.copy());
+		if (decryptedLength > destination.remaining()) {
+			throw new Exception("Decrypted data needs " + decryptedLength + " bytes, but destination only provides " + destination.remaining() + " bytes");
+		}
+		BlockDecryptor decryptor = createBlockDecryptor();
+		byte[] header = new byte[LENGTH_OF_BLOCK_SIZE_BYTES];
+		ByteBuffer inputStagingBuffer = null;
+		ByteBuffer outputStagingBuffer = null;
+		while (source.remaining() > 0) {
+			source.get(header, 0, LENGTH_OF_BLOCK_SIZE_BYTES);
+			int dataLength = BeamUtil.getPosIntFrom2Bytes(header[0], header[1]);
+			ByteBuffer input;
+			int inputPos;
+			if (source.getCurrentRemaining() >= blockLength) {
+				input = source.getCurrentBuffer();
+				inputPos = source.getCurrentPosition();
+				source.skip(blockLength);
+			} else {
+				if (inputStagingBuffer == null) {
+					inputStagingBuffer = ByteBuffer.allocate(blockLength);
+				}
+				source.get(inputStagingBuffer.array(), 0, blockLength);
+				input = inputStagingBuffer;
+				inputPos = 0;
+			}
+			if (destination.getCurrentRemaining() >= dataLength) {
+				decryptor.process(input, inputPos, dataLength, destination.getCurrentBuffer(), destination.getCurrentPosition());
+				destination.skip(dataLength);
+			} else {
+				if (outputStagingBuffer == null) {
+					outputStagingBuffer = ByteBuffer.allocate(blockLength);
+				}
+				decryptor.process(input, inputPos, dataLength, outputStagingBuffer, 0);
+				destination.put(outputStagingBuffer.array(), 0, dataLength);
+			}
+		}
+		source.commit();
+		destination.commit();
+		return decryptedLength;
+	}
+
+	/**
+	 * Optional method to process streams in parallel in encrypt(InputStream, OutputStream, BeamProgressListener) and decrypt(InputStream, OutputStream, BeamProgressListener).
+	 * The calling thread reads the input, several threads (see setThreadCount) encrypt or decrypt the blocks and another thread writes them 
+	 * in the original order. In this mode the BeamProgressListener.bytesProcessed method is called by the writing thread. Default is false
+	 * @param parallelStreamProcessing true to process streams in parallel
+	 */
+	public void setParallelStreamProcessing(boolean parallelStreamProcessing) {
+		this.parallelStreamProcessing = parallelStreamProcessing;
+	}
+
+	/**
+	 * Optional method to limit the number of blocks that are read but not yet written if parallel stream processing is enabled. 
+	 * This bounds the memory usage. Default is DEFAULT_MAXIMUM_BLOCKS_IN_FLIGHT. As one batch of blocks is being read, one is queued and 
+	 * one is being written at the same time, values below 3 allow 3 blocks in flight
+	 * @param maximumBlocksInFlight must be at least 1
+	 * @throws Exception if maximumBlocksInFlight is less than 1
+	 */
+	public void setMaximumBlocksInFlight(int maximumBlocksInFlight) throws Exception {
+		if (maximumBlocksInFlight < 1) {
+			throw new Exception("Maximum blocks in flight must be at least 1 but was " + maximumBlocksInFlight);
+		}
+		this.maximumBlocksInFlight = maximumBlocksInFlight;
+	}
+
+	/**
+	 * Optional method to determine what flush() of the streams returned by getEncryptedOutputStream does with data that does not fill a whole block yet.
+	 * Default is BeamFlushPolicy.KEEP_BUFFERING. The setting applies to streams that are created afterwards.
+	 * With BeamFlushPolicy.EMIT_PARTIAL_BLOCK each flush may write a block that is not full in the middle of the encrypted data. 
+	 * getDecryptedChannel and getDecryptedLength(Path|FileChannel) can not compute positions from the file size alone then. They read the headers 
+	 * of the blocks to find such blocks, so the results stay correct
+	 * @param flushPolicy may not be null
+	 * @throws Exception if flushPolicy is null
+	 */
+	public void setFlushPolicy(BeamFlushPolicy flushPolicy) throws Exception {
+		if (flushPolicy == null) {
+			throw new Exception("Flush policy may not be null");
+		}
+		this.flushPolicy = flushPolicy;
+	}
+
+	protected BeamFlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+
+	/**
+	 * encrypts the file input and writes the result to the file output. The files are read and written with positional reads and writes 
+	 * and processed in ranges of blocks on several threads (see setThreadCount). An existing output file is overwritten.
+	 * @param input file to encrypt
+	 * @param output file to write the encrypted data to
+	 * @throws Exception if an error occurs
+	 */
+	public void encryptFile(Path input, Path output) throws Exception {
+		new ParallelFileProcessor(this, threadCount, ParallelFileProcessor.DEFAULT_CHUNK_LENGTH).encrypt(input, output);
+	}
+
+	/**
+	 * decrypts the file input and writes the result to the file output. The files are read and written with positional reads and writes 
+	 * and processed in ranges of blocks on several threads (see setThreadCount). If the file contains blocks that are not full before the last block 
+	 * (e.g. because encrypted files have been concatenated) it is decrypted sequentially. An existing output file is overwritten.
+	 * @param input file to decrypt
+	 * @param output file to write the decrypted data to
+	 * @throws Exception if an error occurs or the encrypted data is corrupt
+	 */
+	public void decryptFile(Path input, Path output) throws Exception {
+		new ParallelFileProcessor(this, threadCount, ParallelFileProcessor.DEFAULT_CHUNK_LENGTH).decrypt(input, output);
+	}
+
+	/**
+	 * encrypts all bytes available in input and writes the result to output. The data is read and written in batches of up to 64 KB 
+	 * to reduce the number of calls to output. To keep the latency low for slow or interactive streams, the full blocks read so far are 
+	 * written as soon as a read returns fewer bytes than requested; such streams are therefore written in smaller batches. 
+	 * The rest of a block is kept until the block is full or the end of input is reached, as only the last block may be shorter
 	 * @param input input stream to encrypt
 	 * @param output output stream to write to
 	 * @param listener may be null
 	 * @throws Exception if an error occurs
 	 */
 	public void encrypt(InputStream input, OutputStream output, BeamProgressListener listener) throws Exception{
+		if (parallelStreamProcessing) {
+			if (formatHeader) {
+				output.write(FormatHeader.create(blockLength, false, false));
+			}
+			new ParallelStreamProcessor(this, threadCount, maximumBlocksInFlight).encrypt(input, output, listener);
+			return;
+		}
+		encryptInBatches(input, output, null, listener);
+	}
+
+	/**
+	 * encrypts all bytes available in input and writes the result to the channel output. The data is written in batches which are written 
+	 * early if a read returns fewer bytes than requested as described in encrypt(InputStream, OutputStream, BeamProgressListener)
+	 * @param input input stream to encrypt
+	 * @param output channel to write to
+	 * @param listener may be null
+	 * @throws Exception if an error occurs
+	 */
+	public void encrypt(InputStream input, WritableByteChannel output, BeamProgressListener listener) throws Exception{
+		if (parallelStreamProcessing) {
+			encrypt(input, Channels.newOutputStream(output), listener);
+			return;
+		}
+		encryptInBatches(input, null, output, listener);
+	}
+
+	/**
+	 * reads as many whole blocks as fit into STREAM_BATCH_LENGTH, encrypts them with headers into one reusable array and writes the array
+	 * with one call to either outputStream or outputChannel. If a read returns fewer bytes than requested, the full blocks read so far are 
+	 * written right away and the rest of the last block is kept for the next batch, so that data of slow streams is not delayed until
+	 * the batch is full. Only the last block of the stream may be shorter. The listener is still called once per block.
+	 */
+	private void encryptInBatches(InputStream input, OutputStream outputStream, WritableByteChannel outputChannel, BeamProgressListener listener) throws Exception{
 		init();
 		long plainBytesProcessed = 0;
 		long encryptedBytesProcessed = 0;
-		PlaintextBlockReader reader = new PlaintextBlockReader(input, blockLength, randomNumberGenerator);
-		BlockEncryptor encryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
-		Block block = reader.readNextBlock();
-		while (block != null) {
-			byte[] encryptedBlock = encryptor.process(block.getData());
-			output.write(BeamUtil.get2BytesFromPosInt(block.getLength()));
-			output.write(encryptedBlock);
+		int blocksPerBatch = Math.max(1, STREAM_BATCH_LENGTH / blockLength);
+		byte[] plainBatch = new byte[blocksPerBatch * blockLength];
+		byte[] encryptedBatch = new byte[blocksPerBatch * (LENGTH_OF_BLOCK_SIZE_BYTES + blockLength)];
+		ByteBuffer encryptedBatchBuffer = ByteBuffer.wrap(encryptedBatch);
+		if (formatHeader) {
+			writeFully(ByteBuffer.wrap(FormatHeader.create(blockLength, false, false)), outputStream, outputChannel);
+		}
+		int bufferedLength = 0;
+		boolean endOfData = false;
+		while (!endOfData) {
+			int requestedLength = plainBatch.length - bufferedLength;
+			int readLength = input.read(plainBatch, bufferedLength, requestedLength);
+			int plainLength;
+			if (readLength <= 0) {
+				endOfData = true;
+				plainLength = bufferedLength;
+			} else {
+				bufferedLength += readLength;
+				//: write the full blocks if the batch is full or no more data is available at the moment
+				plainLength = (readLength < requestedLength) ? bufferedLength - bufferedLength % blockLength : bufferedLength;
+			}
+			if (plainLength == 0) {
+				continue;
+			}
+			int encryptedLength = encryptInto(plainBatch, 0, plainLength, encryptedBatch, 0);
+			((Buffer)encryptedBatchBuffer).clear();
+			((Buffer)encryptedBatchBuffer).limit(encryptedLength);
+			writeFully(encryptedBatchBuffer, outputStream, outputChannel);
 			if (listener != null) {
-				plainBytesProcessed += block.getLength();
-				encryptedBytesProcessed += blockLength;
-				listener.bytesProcessed(plainBytesProcessed, encryptedBytesProcessed);
+				for (int blockStart = 0; blockStart < plainLength; blockStart += blockLength) {
+					plainBytesProcessed += Math.min(blockLength, plainLength - blockStart);
+					encryptedBytesProcessed += blockLength;
+					listener.bytesProcessed(plainBytesProcessed, encryptedBytesProcessed);
+				}
 			}
-			block = reader.readNextBlock();
+			System.arraycopy(plainBatch, plainLength, plainBatch, 0, bufferedLength - plainLength);
+			bufferedLength -= plainLength;
 		}
 		if (listener != null) {
 			listener.finishedSuccessfully(plainBytesProcessed, encryptedBytesProcessed);
@@ -184,22 +843,63 @@ public class Beam {
 	}
 
 	/**
-	 * decrypts all bytes available in input and writes the result to output 
+	 * writes the remaining bytes of data to either outputStream or outputChannel
+	 */
+	private void writeFully(ByteBuffer data, OutputStream outputStream, WritableByteChannel outputChannel) throws Exception{
+		if (outputStream != null) {
+			outputStream.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+			((Buffer)data).position(data.limit());
+			return;
+		}
+		while (data.hasRemaining()) {
+			outputChannel.write(data);
+		}
+	}
+
+	/**
+	 * decrypts all bytes available in input and writes the result to output. If the data starts with a format header, 
+	 * the block length of the header is used (see setFormatHeader)
 	 * @param input input stream to decrypt
 	 * @param output output stream to write to
 	 * @param listener may be null
 	 * @throws Exception if an error occurs
 	 */
 	public void decrypt(InputStream input, OutputStream output, BeamProgressListener listener) throws Exception {
+		PushbackInputStream pushbackInput = new PushbackInputStream(input, FormatHeader.LENGTH);
+		FormatHeader header = FormatHeader.read(pushbackInput);
+		if (header != null) {
+			getBeamForStreamHeader(header).decryptBlocks(pushbackInput, output, listener);
+			return;
+		}
+		decryptBlocks(pushbackInput, output, listener);
+	}
+
+	/**
+	 * like getBeamForHeader, but streams can only be decrypted if they consist of full blocks
+	 * @throws Exception if the header indicates compact mode or the block length is not valid
+	 */
+	protected Beam getBeamForStreamHeader(FormatHeader header) throws Exception {
+		if (header.isCompact()) {
+			throw new Exception("Data in compact mode can only be decrypted with decrypt(byte[]) or decrypt(String)");
+		}
+		return getBeamForHeader(header);
+	}
+
+	private void decryptBlocks(InputStream input, OutputStream output, BeamProgressListener listener) throws Exception {
+		if (parallelStreamProcessing) {
+			new ParallelStreamProcessor(this, threadCount, maximumBlocksInFlight).decrypt(input, output, listener);
+			return;
+		}
 		init();
 		long plainBytesProcessed = 0;
 		long encryptedBytesProcessed = 0;
 		EncryptedBlockReader reader = new EncryptedBlockReader(input, blockLength);
 		BlockDecryptor decryptor = createBlockDecryptor();
+		byte[] decryptedData = new byte[blockLength];
 		Block block = reader.readNextBlock();
 		while (block != null) {
-			byte[] decryptedData = decryptor.process(block);
-			output.write(decryptedData);
+			decryptor.process(block.getData(), block.getOffset(), block.getLength(), decryptedData, 0);
+			output.write(decryptedData, 0, block.getLength());
 			if (listener != null) {
 				plainBytesProcessed += block.getLength();
 				encryptedBytesProcessed += blockLength;
@@ -232,14 +932,39 @@ public class Beam {
 		return new BeamDecryptedInputStream(this, innerInputStream, listener);
 	}
 
+	/**
+	 * returns a read-only channel that provides the decrypted data of encryptedChannel. Positioning the channel only reads and decrypts the block 
+	 * that contains the position instead of decrypting all data before it. Closing the returned channel closes encryptedChannel.
+	 * @param encryptedChannel channel to the encrypted data
+	 * @return a seekable channel to the decrypted data
+	 * @throws Exception if an error occurs or the encrypted data is corrupt
+	 */
+	public SeekableByteChannel getDecryptedChannel(SeekableByteChannel encryptedChannel) throws Exception {
+		return new BeamDecryptedSeekableByteChannel(this, encryptedChannel);
+	}
+
+	/**
+	 * returns a read-only channel that provides the decrypted data of the given encrypted file. See getDecryptedChannel(SeekableByteChannel)
+	 * @param encryptedFile the encrypted file
+	 * @return a seekable channel to the decrypted data
+	 * @throws Exception if an error occurs or the encrypted data is corrupt
+	 */
+	public SeekableByteChannel getDecryptedChannel(Path encryptedFile) throws Exception {
+		SeekableByteChannel encryptedChannel = Files.newByteChannel(encryptedFile, StandardOpenOption.READ);
+		try {
+			return getDecryptedChannel(encryptedChannel);
+		} catch (Exception e) {
+			encryptedChannel.close();
+			throw e;
+		}
+	}
+
 	protected BlockDecryptor createBlockDecryptor() {
-		init();
-		return new BlockDecryptor(key, posSwitchMap, digitSum, blockLength);
+		return getKeyMaterial().createBlockDecryptor();
 	}
 	
 	protected BlockEncryptor createBlockEncryptor() {
-		init();
-		return new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
+		return getKeyMaterial().createBlockEncryptor();
 	}
 
 	
@@ -251,6 +976,15 @@ public class Beam {
 	 * @throws Exception if an error occurs
 	 */
 	public long getDecryptedLength(InputStream input, BeamProgressListener listener) throws Exception {
+		PushbackInputStream pushbackInput = new PushbackInputStream(input, FormatHeader.LENGTH);
+		FormatHeader header = FormatHeader.read(pushbackInput);
+		if (header != null) {
+			return getBeamForStreamHeader(header).getDecryptedLengthOfBlocks(pushbackInput, listener);
+		}
+		return getDecryptedLengthOfBlocks(pushbackInput, listener);
+	}
+
+	private long getDecryptedLengthOfBlocks(InputStream input, BeamProgressListener listener) throws Exception {
 		long result = 0;
 		long encryptedBytesProcessed = 0;
 		init();
@@ -274,6 +1008,72 @@ public class Beam {
 		return result;
 	}
 	
+	/**
+	 * returns the length of the encrypted file after it would have been decrypted. If the file starts with a format header (see setFormatHeader) 
+	 * that states that all blocks before the last block are full, the length is computed from the file size and the header of the last block. 
+	 * Otherwise blocks before the last block may not be full (e.g. because encrypted files have been concatenated or because of 
+	 * BeamFlushPolicy.EMIT_PARTIAL_BLOCK), so the headers of all blocks are read on several threads (see setThreadCount). 
+	 * The data of the blocks is not read.
+	 * @param encryptedFile the encrypted file
+	 * @return the length of the decrypted data
+	 * @throws Exception if an error occurs or the encrypted data is corrupt
+	 */
+	public long getDecryptedLength(Path encryptedFile) throws Exception {
+		try (FileChannel channel = FileChannel.open(encryptedFile, StandardOpenOption.READ)) {
+			return getDecryptedLength(channel);
+		}
+	}
+
+	/**
+	 * returns the length of the encrypted data in the channel after it would have been decrypted. See getDecryptedLength(Path). 
+	 * The position of the channel is not changed.
+	 * @param encryptedChannel channel to the encrypted data
+	 * @return the length of the decrypted data
+	 * @throws Exception if an error occurs or the encrypted data is corrupt
+	 */
+	public long getDecryptedLength(FileChannel encryptedChannel) throws Exception {
+		FormatHeader header = FormatHeader.read(encryptedChannel);
+		if (header == null) {
+			return new DecryptedLengthCalculator(blockLength, threadCount).getDecryptedLength(encryptedChannel);
+		}
+		if (header.isCompact()) {
+			throw new Exception("The length of data in compact mode can only be determined by decrypting it");
+		}
+		int headerBlockLength = getBeamForHeader(header).getBlockLength();
+		return new DecryptedLengthCalculator(headerBlockLength, threadCount).getDecryptedLength(encryptedChannel, header.getHeaderLength(), !header.hasPartialBlocks());
+	}
+
+	private long getDecryptedLength(ByteBufferSequence source) throws Exception {
+		int encryptedBlockLength = LENGTH_OF_BLOCK_SIZE_BYTES + blockLength;
+		long length = source.remaining();
+		if (length % encryptedBlockLength != 0) {
+			throw new Exception("Length of encrypted data (" + length + ") is not a multiple of the encrypted block length " + encryptedBlockLength + ". Data is corrupt");
+		}
+		byte[] header = new byte[LENGTH_OF_BLOCK_SIZE_BYTES];
+		long result = 0;
+		while (source.remaining() > 0) {
+			source.get(header, 0, LENGTH_OF_BLOCK_SIZE_BYTES);
+			result += readDataLength(header, 0);
+			source.skip(blockLength);
+		}
+		return result;
+	}
+
+	private int readDataLength(byte[] data, int offset) throws Exception {
+		int result = BeamUtil.getPosIntFrom2Bytes(data[offset], data[offset + 1]);
+		if (result > blockLength) {
+			throw new Exception("Data length " + result + " exceeds the block length " + blockLength);
+		}
+		return result;
+	}
+
+	private int toArrayLength(long length) throws Exception {
+		if (length > Integer.MAX_VALUE) {
+			throw new Exception("Length " + length + " exceeds the maximum array length");
+		}
+		return (int)length;
+	}
+
 	protected int getBlockLength() {
 		return blockLength;
 	}
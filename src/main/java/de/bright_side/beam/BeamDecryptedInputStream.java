@@ -1,137 +1,191 @@
 package de.bright_side.beam;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
 
 class BeamDecryptedInputStream extends InputStream{
 	private static final int END_OF_STREAM = -1;
-	
+
 	private InputStream innerInputStream;
+	private Beam beam;
+	/** created when the first block is read after the optional format header has been read*/
 	private BlockDecryptor decryptor;
 	private EncryptedBlockReader blockReader;
-	
-	/** array that acts as a buffer until the block is read or the stream is closed. The array always stays the same and the bytes get overwritten*/
+
+	/** array that holds the decrypted data of the current block. The array always stays the same and the bytes get overwritten*/
 	private byte[] blockBytes;
 
-	/** indicated how much data is in the block. This may be a different value than block length if e.g. the last block in a file is not full. 
-	 * A value of END_OF_STREAM_REACHED indicates that the innerInputStream contains no more data*/
+	/** indicated how much data is in the block. This may be a different value than block length if e.g. the last block in a file is not full*/
 	private int lengthOfDataInBlock = 0;
-	
+
 	/** indicates the position where the next bytes should be passed on in the read methods*/
 	private int blockPos = 0;
-	
+
+	/** true if the innerInputStream contains no more data*/
+	private boolean endOfStreamReached = false;
+
 	/** the length of the blocks as indicated by the provided Beam instance*/
 	private int blockLength = 0;
 
 	private BeamProgressListener listener;
 	private long plainBytesProcessed = 0;
 	private long encryptedBytesProcessed = 0;
-	
+
 	protected BeamDecryptedInputStream(Beam beam, InputStream innerInputStream, BeamProgressListener listener) {
 		this.innerInputStream = innerInputStream;
+		this.beam = beam;
 		this.listener = listener;
-		blockLength = beam.getBlockLength();
-		decryptor = beam.createBlockDecryptor();
-		blockReader = new EncryptedBlockReader(innerInputStream, blockLength);
+	}
+
+	/**
+	 * reads the optional format header and prepares the decryption for the block length of the header or of the Beam instance
+	 */
+	private void readFormatHeader() throws IOException {
+		PushbackInputStream input = new PushbackInputStream(innerInputStream, FormatHeader.LENGTH);
+		FormatHeader header = FormatHeader.read(input);
+		Beam blockBeam = beam;
+		if (header != null) {
+			try {
+				blockBeam = beam.getBeamForStreamHeader(header);
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+		blockLength = blockBeam.getBlockLength();
+		decryptor = blockBeam.createBlockDecryptor();
+		blockReader = new EncryptedBlockReader(input, blockLength);
+		blockBytes = new byte[blockLength];
 	}
 
 	@Override
 	public boolean markSupported() {
 		return false;
 	}
-	
+
 	@Override
 	public synchronized void mark(int readlimit) {
 		//: do nothing as mark is not supported
 	}
-	
+
 	@Override
 	public synchronized void reset() throws IOException {
 		//: do nothing as mark is not supported
 	}
 
+	@Override
+	public int read() throws IOException {
+		if (!fillBlock()) {
+			return END_OF_STREAM;
+		}
+		int result = blockBytes[blockPos] & 0xFF;
+		blockPos ++;
+		bytesProcessed(1);
+		return result;
+	}
+
 	@Override
 	public int read(byte[] output) throws IOException {
-		return read(output, output.length);
+		return read(output, 0, output.length);
 	}
 
 	/**
-	 * 
-	 * @param output may be null for skipping only
-	 * @param lengthToRead the length to be either skipped (if output is null) or written to output
-	 * @return read length
-	 * @throws IOException
+	 * copies the decrypted data directly to output. Blocks until len bytes have been read or the end of the stream is reached
 	 */
-	private int read(byte[] output, long lengthToRead) throws IOException {
-		int remainingLenghInBlock = lengthOfDataInBlock - blockPos; 
-		//: buffer empty?
-		if (remainingLenghInBlock == 0) {
-			readNextBlock();
-		}
-		//: end of input stream reached?
-		if (lengthOfDataInBlock == END_OF_STREAM) {
-			return END_OF_STREAM;
+	@Override
+	public int read(byte[] output, int off, int len) throws IOException {
+		if ((off < 0) || (len < 0) || (len > output.length - off)) {
+			throw new IndexOutOfBoundsException("off = " + off + ", len = " + len + ", length = " + output.length);
 		}
-		if (lengthToRead == 0) {
+		if (len == 0) {
 			return 0;
 		}
-
 		int writtenLength = 0;
-		long requestedLength = lengthToRead;
-		long remainingBytesForOutput = requestedLength;
-		
-		while (remainingBytesForOutput > 0) {
-			
-			int bytesToWrite;
-			//: enough bytes in buffer to write entire output?
-			if (remainingLenghInBlock > remainingBytesForOutput) {
-				bytesToWrite = (int)remainingBytesForOutput; //: cast ok as bytesToWrite is an int and larger than the long value of remainingBytesForOutput 
-			} else {
-				bytesToWrite = remainingLenghInBlock;
-			}
-			//: not just skipping? Then copy
-			if (output != null) {
-				System.arraycopy(blockBytes, blockPos, output, writtenLength, bytesToWrite);
-			}
+		while ((writtenLength < len) && (fillBlock())) {
+			int bytesToWrite = Math.min(len - writtenLength, lengthOfDataInBlock - blockPos);
+			System.arraycopy(blockBytes, blockPos, output, off + writtenLength, bytesToWrite);
 			blockPos += bytesToWrite;
 			writtenLength += bytesToWrite;
-			remainingBytesForOutput -= bytesToWrite;
-			remainingLenghInBlock = lengthOfDataInBlock - blockPos;
-			plainBytesProcessed += bytesToWrite;
-			
-			if (remainingLenghInBlock <= 0) {
-				readNextBlock();
-			}
-			if (lengthOfDataInBlock == END_OF_STREAM) {
-				if (listener != null) {
-					listener.bytesProcessed(plainBytesProcessed, encryptedBytesProcessed);
-				}
-				return writtenLength;
-			}
-			remainingLenghInBlock = lengthOfDataInBlock - blockPos;
-			
 		}
+		if (writtenLength == 0) {
+			return END_OF_STREAM;
+		}
+		bytesProcessed(writtenLength);
+		return writtenLength;
+	}
 
-		
-		if (listener != null) {
-			listener.bytesProcessed(plainBytesProcessed, encryptedBytesProcessed);
+	/**
+	 * same as read(byte[], int, int) but returns 0 instead of -1 at the end of the stream (like InputStream.readNBytes in Java 9+)
+	 */
+	public int readNBytes(byte[] output, int off, int len) throws IOException {
+		int result = read(output, off, len);
+		if (result == END_OF_STREAM) {
+			return 0;
+		}
+		return result;
+	}
+
+	/**
+	 * reads up to len bytes block by block (like InputStream.readNBytes in Java 11+)
+	 */
+	public byte[] readNBytes(int len) throws IOException {
+		if (len < 0) {
+			throw new IllegalArgumentException("len may not be negative but was " + len);
 		}
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		int remainingLength = len;
+		while ((remainingLength > 0) && (fillBlock())) {
+			int bytesToWrite = Math.min(remainingLength, lengthOfDataInBlock - blockPos);
+			result.write(blockBytes, blockPos, bytesToWrite);
+			blockPos += bytesToWrite;
+			remainingLength -= bytesToWrite;
+		}
+		bytesProcessed(len - remainingLength);
+		return result.toByteArray();
+	}
 
-//		plainBytesProcessed += blockPos;
-//		encryptedBytesProcessed += blockLength + Beam.LENGTH_OF_BLOCK_SIZE_BYTES;
-//		private long plainBytesProcessed = 0;
-//		private long encryptedBytesProcessed = 0;
+	/**
+	 * reads all remaining bytes block by block (like InputStream.readAllBytes in Java 9+)
+	 */
+	public byte[] readAllBytes() throws IOException {
+		return readNBytes(Integer.MAX_VALUE);
+	}
 
-		
-		return writtenLength;
+	/**
+	 * writes all remaining bytes to output block by block without further copying (like InputStream.transferTo in Java 9+)
+	 */
+	public long transferTo(OutputStream output) throws IOException {
+		long result = 0;
+		while (fillBlock()) {
+			int bytesToWrite = lengthOfDataInBlock - blockPos;
+			output.write(blockBytes, blockPos, bytesToWrite);
+			blockPos += bytesToWrite;
+			result += bytesToWrite;
+			bytesProcessed(bytesToWrite);
+		}
+		return result;
+	}
+
+	/**
+	 * makes sure that the current block contains data that has not been passed on yet
+	 * @return false if the end of the stream is reached
+	 */
+	private boolean fillBlock() throws IOException {
+		while (blockPos >= lengthOfDataInBlock) {
+			if (endOfStreamReached) {
+				return false;
+			}
+			readNextBlock();
+		}
+		return true;
 	}
 
 	private void readNextBlock() throws IOException {
-		//: end of input stream was reached before?
-		if (lengthOfDataInBlock == END_OF_STREAM) {
-			return;
+		if (blockReader == null) {
+			readFormatHeader();
 		}
-		
 		Block block;
 		try {
 			block = blockReader.readNextBlock();
@@ -139,38 +193,23 @@ class BeamDecryptedInputStream extends InputStream{
 			throw new IOException(e);
 		}
 		blockPos = 0;
-		
+
 		//: end of input stream reached now?
 		if (block == null) {
-			lengthOfDataInBlock = END_OF_STREAM;
+			lengthOfDataInBlock = 0;
+			endOfStreamReached = true;
 			return;
 		}
 		lengthOfDataInBlock = block.getLength();
-		blockBytes = decryptor.process(block);
+		decryptor.process(block.getData(), block.getOffset(), lengthOfDataInBlock, blockBytes, 0);
 		encryptedBytesProcessed += blockLength;
 	}
 
-
-	@Override
-	public int read() throws IOException {
-		byte[] result = new byte[1];
-		int amountRead = read(result);
-		if (amountRead == END_OF_STREAM) {
-			return END_OF_STREAM;
-		}
-		return result[0];
-	}
-	
-	@Override
-	public int read(byte[] output, int off, int len) throws IOException {
-		byte[] result = new byte[len];
-		int amountRead = read(result);
-		if (amountRead == END_OF_STREAM) {
-			return END_OF_STREAM;
+	private void bytesProcessed(long length) {
+		plainBytesProcessed += length;
+		if (listener != null) {
+			listener.bytesProcessed(plainBytesProcessed, encryptedBytesProcessed);
 		}
-
-		System.arraycopy(result, 0, output, off, amountRead);
-		return amountRead;
 	}
 
 	@Override
@@ -180,28 +219,27 @@ class BeamDecryptedInputStream extends InputStream{
 			listener.finishedSuccessfully(plainBytesProcessed, encryptedBytesProcessed);
 		}
 	}
-	
+
 	@Override
 	public long skip(long n) throws IOException {
-		if (n < 0) {
-			return 0;
+		long skippedLength = 0;
+		while ((skippedLength < n) && (fillBlock())) {
+			int bytesToSkip = (int)Math.min(n - skippedLength, lengthOfDataInBlock - blockPos);
+			blockPos += bytesToSkip;
+			skippedLength += bytesToSkip;
+		}
+		if (skippedLength > 0) {
+			bytesProcessed(skippedLength);
 		}
-		return read(null, n);
+		return skippedLength;
 	}
 
 	@Override
 	public int available() throws IOException {
-		int remainingLenghInBlock = lengthOfDataInBlock - blockPos; 
-		//: buffer empty?
-		if (remainingLenghInBlock == 0) {
-			readNextBlock();
-		}
-		//: end of input stream reached?
-		if (lengthOfDataInBlock == END_OF_STREAM) {
+		if (!fillBlock()) {
 			return 0;
 		}
-
-		return remainingLenghInBlock;
+		return lengthOfDataInBlock - blockPos;
 	}
 
 }
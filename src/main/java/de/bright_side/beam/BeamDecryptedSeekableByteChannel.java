@@ -0,0 +1,247 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only channel that provides the decrypted data of an encrypted channel at any position. Only the block that contains
+ * the position is read and decrypted.
+ * If all blocks but the last one are full (which is the case for data written by the encrypt methods), block i starts at i * (2 + blockLength).
+ * Before a block is located that way, the headers of all blocks before it are checked once, and size() checks all headers.
+ * If a block that is not full is found (e.g. because encrypted files have been concatenated or a stream has been flushed 
+ * with BeamFlushPolicy.EMIT_PARTIAL_BLOCK) an index of the block positions is created from the block headers.
+ *
+ * @author Philip Heyse
+ *
+ */
+class BeamDecryptedSeekableByteChannel implements SeekableByteChannel {
+	private static final int END_OF_STREAM = -1;
+	private static final long NO_BLOCK = -1;
+
+	private SeekableByteChannel innerChannel;
+	private BlockDecryptor decryptor;
+	private int blockLength;
+	private int encryptedBlockLength;
+	private long numberOfBlocks;
+	private int lengthOfDataInLastBlock;
+	private long size;
+	private long position = 0;
+	private boolean open = true;
+
+	/** plain position where each block starts followed by the size. null as long as all blocks but the last one are assumed to be full*/
+	private long[] blockStarts = null;
+	/** number of blocks from the start whose headers have been checked to be full as long as blockStarts is null*/
+	private long numberOfCheckedBlocks = 0;
+
+	private ByteBuffer headerBuffer = ByteBuffer.allocate(Beam.LENGTH_OF_BLOCK_SIZE_BYTES);
+	private ByteBuffer encryptedBlock;
+
+	/** the decrypted data of the block with index indexOfDecryptedBlock. The array always stays the same and the bytes get overwritten*/
+	private byte[] decryptedBlock;
+	private long indexOfDecryptedBlock = NO_BLOCK;
+	private int lengthOfDataInDecryptedBlock = 0;
+
+	protected BeamDecryptedSeekableByteChannel(Beam beam, SeekableByteChannel innerChannel) throws IOException {
+		this.innerChannel = innerChannel;
+		blockLength = beam.getBlockLength();
+		encryptedBlockLength = Beam.LENGTH_OF_BLOCK_SIZE_BYTES + blockLength;
+		decryptor = beam.createBlockDecryptor();
+		encryptedBlock = ByteBuffer.allocate(encryptedBlockLength);
+		decryptedBlock = new byte[blockLength];
+
+		long encryptedLength = innerChannel.size();
+		if (encryptedLength % encryptedBlockLength != 0) {
+			throw new IOException("Length of encrypted data (" + encryptedLength + ") is not a multiple of the encrypted block length " + encryptedBlockLength + ". Data is corrupt");
+		}
+		numberOfBlocks = encryptedLength / encryptedBlockLength;
+		if (numberOfBlocks == 0) {
+			size = 0;
+			return;
+		}
+		lengthOfDataInLastBlock = readDataLength(numberOfBlocks - 1);
+		//: only correct if all blocks but the last one are full. This is checked in size() and before a block is read
+		size = (numberOfBlocks - 1) * blockLength + lengthOfDataInLastBlock;
+	}
+
+	@Override
+	public synchronized int read(ByteBuffer dst) throws IOException {
+		checkOpen();
+		int writtenLength = 0;
+		while (dst.hasRemaining()) {
+			long blockIndex = getBlockIndex(position);
+			if (!checkBlocksBefore(blockIndex)) {
+				//: the block positions have changed as a block that is not full has been found. So the block index needs to be determined again
+				continue;
+			}
+			//: the size is correct here: either the position is before the end of the block or all blocks before the last block have been checked
+			if (position >= size) {
+				break;
+			}
+			if ((blockIndex != indexOfDecryptedBlock) && (!readBlock(blockIndex))) {
+				continue;
+			}
+			int posInBlock = (int)(position - getBlockStart(blockIndex));
+			int length = Math.min(dst.remaining(), lengthOfDataInDecryptedBlock - posInBlock);
+			dst.put(decryptedBlock, posInBlock, length);
+			position += length;
+			writtenLength += length;
+		}
+		if ((writtenLength == 0) && (position >= size)) {
+			return END_OF_STREAM;
+		}
+		return writtenLength;
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public synchronized long position() throws IOException {
+		checkOpen();
+		return position;
+	}
+
+	@Override
+	public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+		checkOpen();
+		if (newPosition < 0) {
+			throw new IllegalArgumentException("Position may not be negative but was " + newPosition);
+		}
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public synchronized long size() throws IOException {
+		checkOpen();
+		checkBlocksBefore(numberOfBlocks - 1);
+		return size;
+	}
+
+	@Override
+	public SeekableByteChannel truncate(long size) throws IOException {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public synchronized boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		open = false;
+		innerChannel.close();
+	}
+
+	/**
+	 * @return false if the block is not full although it is not the last block. In this case the block starts are created and the block index of the position may have changed
+	 */
+	private boolean readBlock(long blockIndex) throws IOException {
+		readFully(encryptedBlock, blockIndex * encryptedBlockLength);
+		int dataLength = getDataLength(encryptedBlock.get(0), encryptedBlock.get(1));
+		decryptor.process(encryptedBlock.array(), Beam.LENGTH_OF_BLOCK_SIZE_BYTES, dataLength, decryptedBlock, 0);
+		indexOfDecryptedBlock = blockIndex;
+		lengthOfDataInDecryptedBlock = dataLength;
+
+		if (blockStarts == null) {
+			int expectedDataLength = blockIndex == numberOfBlocks - 1 ? lengthOfDataInLastBlock : blockLength;
+			if (dataLength != expectedDataLength) {
+				createBlockStarts();
+				return false;
+			}
+			if (blockIndex == numberOfCheckedBlocks) {
+				numberOfCheckedBlocks ++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * checks the headers of all blocks before blockIndex that have not been checked yet
+	 * @return false if one of them is not full. In this case the block starts are created and the block index of the position may have changed
+	 */
+	private boolean checkBlocksBefore(long blockIndex) throws IOException {
+		while ((blockStarts == null) && (numberOfCheckedBlocks < blockIndex)) {
+			if (readDataLength(numberOfCheckedBlocks) != blockLength) {
+				createBlockStarts();
+				return false;
+			}
+			numberOfCheckedBlocks ++;
+		}
+		return true;
+	}
+
+	private long getBlockIndex(long plainPosition) {
+		if (blockStarts == null) {
+			return Math.min(plainPosition / blockLength, numberOfBlocks - 1);
+		}
+		//: find the last block that starts at or before the position. Blocks without data are skipped that way
+		int low = 0;
+		int high = (int)numberOfBlocks - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (blockStarts[middle] <= plainPosition) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	private long getBlockStart(long blockIndex) {
+		if (blockStarts == null) {
+			return blockIndex * blockLength;
+		}
+		return blockStarts[(int)blockIndex];
+	}
+
+	private void createBlockStarts() throws IOException {
+		if (numberOfBlocks >= Integer.MAX_VALUE) {
+			throw new IOException("Cannot create index for " + numberOfBlocks + " blocks");
+		}
+		long[] result = new long[(int)numberOfBlocks + 1];
+		for (int i = 0; i < numberOfBlocks; i++) {
+			result[i + 1] = result[i] + readDataLength(i);
+		}
+		size = result[(int)numberOfBlocks];
+		blockStarts = result;
+	}
+
+	private int readDataLength(long blockIndex) throws IOException {
+		readFully(headerBuffer, blockIndex * encryptedBlockLength);
+		return getDataLength(headerBuffer.get(0), headerBuffer.get(1));
+	}
+
+	private int getDataLength(byte byte1, byte byte2) throws IOException {
+		int result = BeamUtil.getPosIntFrom2Bytes(byte1, byte2);
+		if (result > blockLength) {
+			throw new IOException("Data length " + result + " exceeds the block length " + blockLength);
+		}
+		return result;
+	}
+
+	private void readFully(ByteBuffer buffer, long innerPosition) throws IOException {
+		((Buffer)buffer).clear();
+		innerChannel.position(innerPosition);
+		while (buffer.hasRemaining()) {
+			if (innerChannel.read(buffer) < 0) {
+				throw new IOException("Unexpected end of encrypted data at position " + (innerPosition + buffer.position()));
+			}
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+	}
+
+}
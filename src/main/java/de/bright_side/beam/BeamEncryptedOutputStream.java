@@ -5,16 +5,23 @@ import java.io.OutputStream;
 
 class BeamEncryptedOutputStream extends OutputStream{
 	private OutputStream innerOutputStream;
-	
+
 	private BlockEncryptor encryptor;
 	private RandomNumberGenerator randomNumberGenerator;
-	
+	private BeamFlushPolicy flushPolicy;
+
+	/** format header that is written in front of the first block or null if it has been written or is not needed*/
+	private byte[] formatHeader;
+
 	/** array that acts as a buffer until the block is full or the stream is closed. The array always stays the same and the bytes get overwritten*/
 	private byte[] blockBytes;
-	
+
+	/** the header and the encrypted block that are written to the inner output stream in one call. The array always stays the same and the bytes get overwritten*/
+	private byte[] encryptedBlockBytes;
+
 	/** indicates the position where the next bytes should be written to in the blockBytes array*/
 	private int blockPos = 0;
-	
+
 	/** the length of the blocks as indicated by the provided Beam instance*/
 	private int blockLength = 0;
 
@@ -27,41 +34,50 @@ class BeamEncryptedOutputStream extends OutputStream{
 		this.listener = listener;
 		blockLength = beam.getBlockLength();
 		blockBytes = new byte[blockLength];
+		encryptedBlockBytes = new byte[Beam.LENGTH_OF_BLOCK_SIZE_BYTES + blockLength];
 		encryptor = beam.createBlockEncryptor();
 		randomNumberGenerator = beam.getRandomNumberGenerator();
+		flushPolicy = beam.getFlushPolicy();
+		if (beam.isFormatHeader()) {
+			formatHeader = FormatHeader.create(blockLength, false, flushPolicy == BeamFlushPolicy.EMIT_PARTIAL_BLOCK);
+		}
 	}
-	
+
 	@Override
 	public void write(int b) throws IOException {
-		byte[] data = new byte[1];
-		data[0] = (byte)b;
-		write(data[0]);
+		blockBytes[blockPos] = (byte)b;
+		blockPos ++;
+		if (blockPos >= blockLength) {
+			writeBlock();
+		}
 	}
 
 	@Override
-	public void write(byte[] b, int off, int len) throws IOException {
-		byte[] bytesToWrite = new byte[len];
-		System.arraycopy(b, off, bytesToWrite, 0, len);
-		write(bytesToWrite);
+	public void write(byte[] input) throws IOException {
+		write(input, 0, input.length);
 	}
-	
+
+	/**
+	 * copies the input directly to the block buffer. Full blocks in the input are encrypted directly from the input without copying
+	 */
 	@Override
-	public void write(byte[] input) throws IOException {
-		int posInInput = 0;
-		int remainingInputLength = input.length;
+	public void write(byte[] input, int off, int len) throws IOException {
+		if ((off < 0) || (len < 0) || (len > input.length - off)) {
+			throw new IndexOutOfBoundsException("off = " + off + ", len = " + len + ", length = " + input.length);
+		}
+		int posInInput = off;
+		int remainingInputLength = len;
 
 		while (remainingInputLength > 0) {
-			int lengthThatFitInBlock = blockLength - blockPos;
-			
-			int lengthToWrite = 0;
-			if (lengthThatFitInBlock >= remainingInputLength) {
-				//: it fits so write all remaining bytes from input
-				lengthToWrite = remainingInputLength;
-			} else {
-				//: it doesn't fit so write as many bytes as fit into the current block
-				lengthToWrite = lengthThatFitInBlock;
+			if ((blockPos == 0) && (remainingInputLength >= blockLength)) {
+				writeBlock(input, posInInput, blockLength);
+				posInInput += blockLength;
+				remainingInputLength -= blockLength;
+				continue;
 			}
 
+			//: write as many bytes as fit into the current block
+			int lengthToWrite = Math.min(blockLength - blockPos, remainingInputLength);
 			System.arraycopy(input, posInInput, blockBytes, blockPos, lengthToWrite);
 			posInInput += lengthToWrite;
 			blockPos += lengthToWrite;
@@ -70,19 +86,25 @@ class BeamEncryptedOutputStream extends OutputStream{
 			//: write the block to inner output stream once it is full
 			if (blockPos >= blockLength) {
 				writeBlock();
-				blockPos = 0;
 			}
 		}
 	}
 
-
+	/**
+	 * depending on the flush policy of the Beam instance the data that does not fill a whole block is written as a block. Then the inner stream is flushed
+	 */
 	@Override
 	public void flush() throws IOException {
+		if (flushPolicy == BeamFlushPolicy.EMIT_PARTIAL_BLOCK) {
+			writeBlock();
+		}
+		innerOutputStream.flush();
 	}
-	
+
 	@Override
 	public void close() throws IOException {
 		writeBlock();
+		writeFormatHeader();
 		innerOutputStream.close();
 		if (listener != null) {
 			listener.finishedSuccessfully(plainBytesProcessed, encryptedBytesProcessed);
@@ -94,21 +116,36 @@ class BeamEncryptedOutputStream extends OutputStream{
 			return;
 		}
 
-		//: create a block with the correct length where the rest of the bytes is filled with random values
-		byte[] blockWithCorrectLength = BeamUtil.createDataBlockWithCorrectLength(blockBytes, blockPos, blockLength, randomNumberGenerator);
-		byte[] encryptedBytes = encryptor.process(blockWithCorrectLength);
-		
-		innerOutputStream.write(BeamUtil.get2BytesFromPosInt(blockPos));
-		innerOutputStream.write(encryptedBytes);
-		
-		plainBytesProcessed += blockPos;
-		encryptedBytesProcessed += blockLength + Beam.LENGTH_OF_BLOCK_SIZE_BYTES;
+		//: fill the rest of the block with random values
+		if (blockPos < blockLength) {
+			randomNumberGenerator.fill(blockBytes, blockPos, blockLength - blockPos);
+		}
+		writeBlock(blockBytes, 0, blockPos);
+		blockPos = 0;
+	}
+
+	/**
+	 * encrypts the full block that starts at offset in source and writes it with the header for dataLength to the inner output stream
+	 */
+	private void writeBlock(byte[] source, int offset, int dataLength) throws IOException {
+		writeFormatHeader();
+		BeamUtil.write2BytesFromPosInt(dataLength, encryptedBlockBytes, 0);
+		encryptor.process(source, offset, encryptedBlockBytes, Beam.LENGTH_OF_BLOCK_SIZE_BYTES);
+		innerOutputStream.write(encryptedBlockBytes);
+
+		plainBytesProcessed += dataLength;
+		encryptedBytesProcessed += encryptedBlockBytes.length;
 
 		if (listener != null) {
 			listener.bytesProcessed(plainBytesProcessed, encryptedBytesProcessed);
 		}
-		
-		blockPos = 0;
+	}
+
+	private void writeFormatHeader() throws IOException {
+		if (formatHeader != null) {
+			innerOutputStream.write(formatHeader);
+			formatHeader = null;
+		}
 	}
 
 }
@@ -0,0 +1,18 @@
+package de.bright_side.beam;
+
+/**
+ * Determines what flush() of the output stream from Beam.getEncryptedOutputStream does with data that does not fill a whole block yet
+ *
+ * @author Philip Heyse
+ *
+ */
+public enum BeamFlushPolicy {
+	/** the data stays in the buffer until the block is full or the stream is closed. Only the inner stream is flushed */
+	KEEP_BUFFERING,
+
+	/** the data is written as a block that is not full (the rest is filled with random bytes) and the inner stream is flushed.
+	 * This makes the encrypted data longer, but all data written so far can be decrypted by the receiver.
+	 * The encrypted data may contain blocks that are not full before the last block. Beam.getDecryptedChannel and Beam.getDecryptedLength(Path) 
+	 * read the block headers to handle them */
+	EMIT_PARTIAL_BLOCK
+}
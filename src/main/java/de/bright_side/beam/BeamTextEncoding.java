@@ -0,0 +1,28 @@
+package de.bright_side.beam;
+
+/**
+ * Text encodings for the encrypted data of the String methods and the encrypting writer/decrypting reader of Beam
+ *
+ * @author Philip Heyse
+ *
+ */
+public enum BeamTextEncoding {
+	/** upper case hex with 2 characters per byte. Compatible with all earlier versions */
+	HEX(new HexCodec()),
+
+	/** URL-safe Base64 without padding characters, 4 characters per 3 bytes */
+	BASE64_URL(new Base64UrlCodec()),
+
+	/** Z85 (ZeroMQ Base85), 5 characters per 4 bytes. A last group with less than 4 bytes is written as one character more than the number of bytes */
+	Z85(new Z85Codec());
+
+	private final TextCodec codec;
+
+	private BeamTextEncoding(TextCodec codec) {
+		this.codec = codec;
+	}
+
+	TextCodec getCodec() {
+		return codec;
+	}
+}
@@ -7,6 +7,8 @@ import java.io.ByteArrayOutputStream;
  *
  */
 import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 
 class BeamUtil {
 	private static final String STRING_ENCODING = "UTF-8";
@@ -86,6 +88,22 @@ class BeamUtil {
 		return data;
 	}
 
+	/**
+	 * like readMaximumAmountOfBytes(InputStream, int) but reads into the existing array output
+	 * @return the number of bytes read which is less than length only if the end of the stream has been reached
+	 */
+	public static int readMaximumAmountOfBytes(InputStream inputStream, byte[] output, int offset, int length) throws Exception{
+		int readLengthTotal = 0;
+		while (readLengthTotal < length) {
+			int readLength = inputStream.read(output, offset + readLengthTotal, length - readLengthTotal);
+			if (readLength <= 0) {
+				return readLengthTotal;
+			}
+			readLengthTotal += readLength;
+		}
+		return readLengthTotal;
+	}
+
 	public static byte[] readAllBytes(InputStream inputStream) throws Exception {
 		try {
 			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -109,11 +127,41 @@ class BeamUtil {
 		return result;
 	}
 
+	public static void write2BytesFromPosInt(int value, byte[] output, int offset) {
+		output[offset] = (byte)((value / 256) + Byte.MIN_VALUE);
+		output[offset + 1] = (byte)((value % 256) + Byte.MIN_VALUE);
+	}
+
+	public static void write2BytesFromPosInt(int value, ByteBuffer output, int position) {
+		output.put(position, (byte)((value / 256) + Byte.MIN_VALUE));
+		output.put(position + 1, (byte)((value % 256) + Byte.MIN_VALUE));
+	}
+
+	/**
+	 * copies length bytes starting at the absolute position of buffer to output. The position of buffer is not changed
+	 */
+	public static void getBytes(ByteBuffer buffer, int position, byte[] output, int offset, int length) {
+		int oldPosition = buffer.position();
+		((Buffer)buffer).position(position);
+		buffer.get(output, offset, length);
+		((Buffer)buffer).position(oldPosition);
+	}
+
+	/**
+	 * copies length bytes of input to buffer starting at its absolute position. The position of buffer is not changed
+	 */
+	public static void putBytes(byte[] input, int offset, int length, ByteBuffer buffer, int position) {
+		int oldPosition = buffer.position();
+		((Buffer)buffer).position(position);
+		buffer.put(input, offset, length);
+		((Buffer)buffer).position(oldPosition);
+	}
+
 	public static int getPosIntFrom2Bytes(byte byte1, byte byte2) {
 		return ((byte1 - Byte.MIN_VALUE) * 256) + (byte2 - Byte.MIN_VALUE);
 	}
 	
-	private static int hexToBin(char character) {
+	protected static int hexToBin(char character) {
 		if ('0' <= character && character <= '9') {
 			return character - '0';
 		}
@@ -147,6 +195,17 @@ class BeamUtil {
 		return result;
 	}
 	
+	/**
+	 * writes 2 hex characters for each of the length bytes in data starting at offset to output starting at outputOffset
+	 */
+	protected static void writeHexChars(byte[] data, int offset, int length, char[] output, int outputOffset) {
+		for (int i = 0; i < length; i++) {
+			byte b = data[offset + i];
+			output[outputOffset + 2 * i] = hexCode[(b >> 4) & 0xF];
+			output[outputOffset + 2 * i + 1] = hexCode[(b & 0xF)];
+		}
+	}
+
     public static String byteArrayToHexString(byte[] data) {
         StringBuilder r = new StringBuilder(data.length * 2);
         for (byte b : data) {
@@ -174,9 +233,8 @@ class BeamUtil {
 			return data;
 		}
 		byte[] dataWithCorrectLength = new byte[blockLength];
-		byte[] randomBytes = randomNumberGenerator.getRandomBytes(blockLength - lengthOfData);
 		System.arraycopy(data, 0, dataWithCorrectLength, 0, lengthOfData);
-		System.arraycopy(randomBytes, 0, dataWithCorrectLength, lengthOfData, randomBytes.length);
+		randomNumberGenerator.fill(dataWithCorrectLength, lengthOfData, blockLength - lengthOfData);
 		return dataWithCorrectLength;
 	}
 
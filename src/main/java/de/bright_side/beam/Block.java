@@ -7,6 +7,7 @@ package de.bright_side.beam;
  */
 class Block {
 	private byte[] data;
+	private int offset;
 	private int length;
 	
 	public byte[] getData() {
@@ -15,6 +16,13 @@ class Block {
 	public void setData(byte[] data) {
 		this.data = data;
 	}
+	/** position in data where the block starts*/
+	public int getOffset() {
+		return offset;
+	}
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
 	public int getLength() {
 		return length;
 	}
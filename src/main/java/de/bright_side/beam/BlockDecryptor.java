@@ -1,47 +1,78 @@
 package de.bright_side.beam;
 
+import java.nio.ByteBuffer;
+
 /**
  * 
  * @author Philip Heyse
  *
  */
-import java.util.Map;
-import java.util.Map.Entry;
-
 class BlockDecryptor {
-	private byte[] key;
-	private Map<Integer, Integer> posSwitchMap;
-	private int blockLength;
-	private int digitSum;
-
-	public BlockDecryptor(byte[] key, Map<Integer, Integer> posSwitchMap, int digitSum, int blockLength) {
-		this.key = key;
-		this.posSwitchMap = posSwitchMap;
-		this.digitSum = digitSum;
-		this.blockLength = blockLength;
+	private int[] inversePosSwitchTable;
+	private byte[] keyStreamInPlainOrder;
+	private BlockKernel kernel = BlockKernels.getKernel();
+	/** copies of one block for buffers without accessible array (e.g. direct buffers), so that the kernel can process arrays. Created when needed*/
+	private byte[] sourceBlock = null;
+	private byte[] destinationBlock = null;
+
+	/**
+	 * @param inversePosSwitchTable table where the index is the position in the plain block and the value is the position in the encrypted block
+	 * @param keyStreamInPlainOrder key bytes for each position of the plain block
+	 */
+	public BlockDecryptor(int[] inversePosSwitchTable, byte[] keyStreamInPlainOrder) {
+		this.inversePosSwitchTable = inversePosSwitchTable;
+		this.keyStreamInPlainOrder = keyStreamInPlainOrder;
 	}
 
 	public byte[] process(Block block) {
-		byte[] blockData = block.getData();
-		byte[] dataIncludingPadding = new byte[blockLength];
-		int keyPos = digitSum % key.length;
-		for (Entry<Integer, Integer> i: posSwitchMap.entrySet()) {
-			dataIncludingPadding[i.getValue()] = (byte)(blockData[i.getKey()] - key[keyPos]);
-			keyPos ++;
-			if (keyPos >= key.length) {
-				keyPos = 0;
-			}
+		//: only the data is decrypted. The padding random data at the end is skipped
+		byte[] result = new byte[block.getLength()];
+		process(block.getData(), block.getOffset(), block.getLength(), result, 0);
+		return result;
+	}
+
+	/**
+	 * decrypts the first dataLength bytes of the encrypted block that starts at sourceOffset and writes them to destination
+	 */
+	public void process(byte[] source, int sourceOffset, int dataLength, byte[] destination, int destinationOffset) {
+		kernel.gatherSubtract(source, sourceOffset, inversePosSwitchTable, keyStreamInPlainOrder, destination, destinationOffset, dataLength);
+	}
+
+	/**
+	 * decrypts the first dataLength bytes of the encrypted block that starts at the absolute position sourcePosition and writes them to destination 
+	 * starting at the absolute position destinationPosition. The positions and limits of the buffers are not changed.
+	 */
+	public void process(ByteBuffer source, int sourcePosition, int dataLength, ByteBuffer destination, int destinationPosition) {
+		if (source.hasArray() && destination.hasArray()) {
+			process(source.array(), source.arrayOffset() + sourcePosition, dataLength, destination.array(), destination.arrayOffset() + destinationPosition);
+			return;
 		}
-		
-		//: there is no padding with random data because the length of the data is the block length?
-		if (block.getLength() ==  blockLength) {
-			return dataIncludingPadding;
+		int blockLength = inversePosSwitchTable.length;
+		byte[] sourceArray = source.hasArray() ? source.array() : getSourceBlock(blockLength);
+		int sourceOffset = source.hasArray() ? source.arrayOffset() + sourcePosition : 0;
+		if (!source.hasArray()) {
+			BeamUtil.getBytes(source, sourcePosition, sourceArray, 0, blockLength);
 		}
+		if (destination.hasArray()) {
+			process(sourceArray, sourceOffset, dataLength, destination.array(), destination.arrayOffset() + destinationPosition);
+		} else {
+			process(sourceArray, sourceOffset, dataLength, getDestinationBlock(blockLength), 0);
+			BeamUtil.putBytes(destinationBlock, 0, dataLength, destination, destinationPosition);
+		}
+	}
 
-		//: remove the padding random data at the end
-		byte[] result = new byte[block.getLength()];
-		System.arraycopy(dataIncludingPadding, 0, result, 0, block.getLength());
-		return result;
+	private byte[] getSourceBlock(int blockLength) {
+		if (sourceBlock == null) {
+			sourceBlock = new byte[blockLength];
+		}
+		return sourceBlock;
+	}
+
+	private byte[] getDestinationBlock(int blockLength) {
+		if (destinationBlock == null) {
+			destinationBlock = new byte[blockLength];
+		}
+		return destinationBlock;
 	}
 
 }
@@ -1,40 +1,112 @@
 package de.bright_side.beam;
 
+import java.nio.ByteBuffer;
+
 /**
  * 
  * @author Philip Heyse
  *
  */
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.SortedMap;
-
 class BlockEncryptor {
-	private byte[] key;
-	private Map<Integer, Integer> posSwitchMap;
+	private int[] posSwitchTable;
+	private int[] cycleStarts;
+	private byte[] keyStream;
 	private int blockLength;
-	private int digitSum;
+	private BlockKernel kernel = BlockKernels.getKernel();
+	/** copies of one block for buffers without accessible array (e.g. direct buffers), so that the kernel can process arrays. Created when needed*/
+	private byte[] sourceBlock = null;
+	private byte[] destinationBlock = null;
 
-	protected BlockEncryptor(byte[] key, SortedMap<Integer, Integer> posSwitchMap, int digitSum, int blockLength) {
-		this.key = key;
-		this.posSwitchMap = posSwitchMap;
-		this.digitSum = digitSum;
-		this.blockLength = blockLength;
+	/**
+	 * @param posSwitchTable table where the index is the position in the encrypted block and the value is the position in the plain block
+	 * @param cycleStarts one position of each cycle of the posSwitchTable, needed for processInPlace
+	 * @param keyStream key bytes for each position of the encrypted block
+	 */
+	protected BlockEncryptor(int[] posSwitchTable, int[] cycleStarts, byte[] keyStream) {
+		this.posSwitchTable = posSwitchTable;
+		this.cycleStarts = cycleStarts;
+		this.keyStream = keyStream;
+		this.blockLength = posSwitchTable.length;
 	}
 
 	public byte[] process(byte[] block) {
 		byte[] result = new byte[blockLength];
-		int keyPos = digitSum % key.length;
-		for (Entry<Integer, Integer> i: posSwitchMap.entrySet()) {
-			result[i.getKey()] = (byte)(block[i.getValue()] + key[keyPos]);
-//			System.out.println("value = " + i.getValue() + ", key = " + i.getKey());
-			keyPos ++;
-			if (keyPos >= key.length) {
-				keyPos = 0;
+		process(block, 0, result, 0);
+		return result;
+	}
+
+	/**
+	 * encrypts the block of blockLength bytes that starts at sourceOffset and writes the encrypted block to destination
+	 */
+	public void process(byte[] source, int sourceOffset, byte[] destination, int destinationOffset) {
+		kernel.gatherAdd(source, sourceOffset, posSwitchTable, keyStream, destination, destinationOffset, blockLength);
+	}
+
+	/**
+	 * encrypts the block of blockLength bytes that starts at offset without using a second buffer. 
+	 * The bytes are moved along each cycle of the position switch table, so each byte is read and written once.
+	 */
+	public void processInPlace(byte[] data, int offset) {
+		for (int cycleStart: cycleStarts) {
+			byte firstByteInCycle = data[offset + cycleStart];
+			int pos = cycleStart;
+			int nextPos = posSwitchTable[pos];
+			while (nextPos != cycleStart) {
+				data[offset + pos] = (byte)(data[offset + nextPos] + keyStream[pos]);
+				pos = nextPos;
+				nextPos = posSwitchTable[pos];
 			}
+			data[offset + pos] = (byte)(firstByteInCycle + keyStream[pos]);
 		}
-		
-		return result;
+	}
+
+	/**
+	 * encrypts the block of blockLength bytes that starts at the absolute position sourcePosition and writes the encrypted block to destination 
+	 * starting at the absolute position destinationPosition. The positions and limits of the buffers are not changed.
+	 */
+	public void process(ByteBuffer source, int sourcePosition, ByteBuffer destination, int destinationPosition) {
+		if (source.hasArray() && destination.hasArray()) {
+			process(source.array(), source.arrayOffset() + sourcePosition, destination.array(), destination.arrayOffset() + destinationPosition);
+			return;
+		}
+		byte[] sourceArray = source.hasArray() ? source.array() : getSourceBlock();
+		int sourceOffset = source.hasArray() ? source.arrayOffset() + sourcePosition : 0;
+		if (!source.hasArray()) {
+			BeamUtil.getBytes(source, sourcePosition, sourceArray, 0, blockLength);
+		}
+		if (destination.hasArray()) {
+			process(sourceArray, sourceOffset, destination.array(), destination.arrayOffset() + destinationPosition);
+		} else {
+			process(sourceArray, sourceOffset, getDestinationBlock(), 0);
+			BeamUtil.putBytes(destinationBlock, 0, blockLength, destination, destinationPosition);
+		}
+	}
+
+	/**
+	 * like processInPlace(byte[], int) for a block that starts at the absolute position of the buffer
+	 */
+	public void processInPlace(ByteBuffer data, int position) {
+		if (data.hasArray()) {
+			processInPlace(data.array(), data.arrayOffset() + position);
+			return;
+		}
+		BeamUtil.getBytes(data, position, getSourceBlock(), 0, blockLength);
+		process(sourceBlock, 0, getDestinationBlock(), 0);
+		BeamUtil.putBytes(destinationBlock, 0, blockLength, data, position);
+	}
+
+	private byte[] getSourceBlock() {
+		if (sourceBlock == null) {
+			sourceBlock = new byte[blockLength];
+		}
+		return sourceBlock;
+	}
+
+	private byte[] getDestinationBlock() {
+		if (destinationBlock == null) {
+			destinationBlock = new byte[blockLength];
+		}
+		return destinationBlock;
 	}
 
 }
@@ -0,0 +1,20 @@
+package de.bright_side.beam;
+
+/**
+ * The inner loops of BlockEncryptor and BlockDecryptor: every byte is read from the source position given by a table 
+ * and the key byte of its destination position is added or subtracted. Implementations must produce exactly the same bytes as ScalarBlockKernel.
+ *
+ * @author Philip Heyse
+ *
+ */
+interface BlockKernel {
+	/**
+	 * destination[destinationOffset + i] = (byte)(source[sourceOffset + table[i]] + key[i]) for all i less than length
+	 */
+	void gatherAdd(byte[] source, int sourceOffset, int[] table, byte[] key, byte[] destination, int destinationOffset, int length);
+
+	/**
+	 * destination[destinationOffset + i] = (byte)(source[sourceOffset + table[i]] - key[i]) for all i less than length
+	 */
+	void gatherSubtract(byte[] source, int sourceOffset, int[] table, byte[] key, byte[] destination, int destinationOffset, int length);
+}
@@ -0,0 +1,88 @@
+package de.bright_side.beam;
+
+import java.util.Arrays;
+
+/**
+ * Selects the BlockKernel for this runtime. The scalar kernel is used by default. The system property KERNEL_PROPERTY with the value 
+ * "vector" selects the vector kernel instead. The vector kernel is only contained in the multi-release jar for Java 17+ and needs 
+ * the module jdk.incubator.vector (--add-modules jdk.incubator.vector). Its gather by the position switch table is not compiled to a 
+ * vector instruction on all JDKs, so it is not selected without measuring that it is faster on the target JDK and CPU.
+ * The vector kernel is only used if it produces the same bytes as the scalar kernel in a self-check. 
+ *
+ * @author Philip Heyse
+ *
+ */
+class BlockKernels {
+	protected static final String KERNEL_PROPERTY = "de.bright_side.beam.kernel";
+	protected static final String VECTOR_KERNEL_NAME = "vector";
+	private static final String VECTOR_KERNEL_CLASS_NAME = "de.bright_side.beam.VectorBlockKernel";
+	private static final int[] SELF_CHECK_LENGTHS = {1, 31, 32, 100, 1024, 1031};
+
+	private static class Holder {
+		private static final BlockKernel KERNEL = selectKernel();
+	}
+
+	public static BlockKernel getKernel() {
+		return Holder.KERNEL;
+	}
+
+	private static BlockKernel selectKernel() {
+		ScalarBlockKernel scalarKernel = new ScalarBlockKernel();
+		String kernelName = System.getProperty(KERNEL_PROPERTY);
+		if (VECTOR_KERNEL_NAME.equals(kernelName)) {
+			BlockKernel vectorKernel = createKernel(VECTOR_KERNEL_CLASS_NAME);
+			if ((vectorKernel != null) && (isSameAs(vectorKernel, scalarKernel))) {
+				return vectorKernel;
+			}
+		}
+		return scalarKernel;
+	}
+
+	/**
+	 * @return the kernel or null if the class or the classes it uses are not available in this runtime
+	 */
+	protected static BlockKernel createKernel(String className) {
+		try {
+			return (BlockKernel)Class.forName(className).getDeclaredConstructor().newInstance();
+		} catch (Exception | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if kernel produces the same bytes as referenceKernel for several lengths, offsets and all byte values
+	 */
+	protected static boolean isSameAs(BlockKernel kernel, BlockKernel referenceKernel) {
+		try {
+			for (int length: SELF_CHECK_LENGTHS) {
+				int sourceOffset = 3;
+				int destinationOffset = 5;
+				byte[] source = new byte[sourceOffset + length];
+				byte[] key = new byte[length];
+				int[] table = new int[length];
+				for (int i = 0; i < length; i++) {
+					source[sourceOffset + i] = (byte)(i * 7 + 1);
+					key[i] = (byte)(i * 13 + 101);
+					//: the lengths are no multiples of 7, so the table is a permutation
+					table[i] = (i * 7 + 3) % length;
+				}
+				byte[] expected = new byte[destinationOffset + length];
+				byte[] result = new byte[destinationOffset + length];
+				referenceKernel.gatherAdd(source, sourceOffset, table, key, expected, destinationOffset, length);
+				kernel.gatherAdd(source, sourceOffset, table, key, result, destinationOffset, length);
+				if (!Arrays.equals(expected, result)) {
+					return false;
+				}
+				referenceKernel.gatherSubtract(source, sourceOffset, table, key, expected, destinationOffset, length);
+				kernel.gatherSubtract(source, sourceOffset, table, key, result, destinationOffset, length);
+				if (!Arrays.equals(expected, result)) {
+					return false;
+				}
+			}
+			return true;
+		} catch (RuntimeException | LinkageError e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package de.bright_side.beam;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes an array of byte buffers as one continuous sequence (as gathering and scattering channels do). 
+ * The positions of the buffers are only changed when commit is called so that the buffers stay untouched if an error occurs before.
+ * 
+ * @author Philip Heyse
+ *
+ */
+class ByteBufferSequence {
+	private ByteBuffer[] buffers;
+	
+	/** index of the current buffer*/
+	private int index = 0;
+	
+	/** position in the current buffer*/
+	private int position;
+	
+	protected ByteBufferSequence(ByteBuffer[] buffers) {
+		this.buffers = buffers;
+		if (buffers.length > 0) {
+			position = buffers[0].position();
+		}
+		skipExhaustedBuffers();
+	}
+	
+	private ByteBufferSequence(ByteBufferSequence other) {
+		this.buffers = other.buffers;
+		this.index = other.index;
+		this.position = other.position;
+	}
+	
+	/**
+	 * @return a sequence with the same buffers and position. Reading from the copy does not change the position of this sequence
+	 */
+	public ByteBufferSequence copy() {
+		return new ByteBufferSequence(this);
+	}
+	
+	public long remaining() {
+		if (index >= buffers.length) {
+			return 0;
+		}
+		long result = buffers[index].limit() - position;
+		for (int i = index + 1; i < buffers.length; i++) {
+			result += buffers[i].remaining();
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the buffer at the current position. The bytes from getCurrentPosition() to getCurrentRemaining() may be accessed directly
+	 */
+	public ByteBuffer getCurrentBuffer() {
+		return buffers[index];
+	}
+	
+	public int getCurrentPosition() {
+		return position;
+	}
+
+	/**
+	 * @return remaining bytes in the current buffer
+	 */
+	public int getCurrentRemaining() {
+		if (index >= buffers.length) {
+			return 0;
+		}
+		return buffers[index].limit() - position;
+	}
+	
+	public void skip(int length) {
+		int remainingLength = length;
+		while (remainingLength > 0) {
+			int lengthInBuffer = Math.min(remainingLength, getCurrentRemaining());
+			position += lengthInBuffer;
+			remainingLength -= lengthInBuffer;
+			skipExhaustedBuffers();
+		}
+	}
+	
+	/**
+	 * copies the next length bytes of the sequence to the given array
+	 */
+	public void get(byte[] destination, int offset, int length) {
+		int remainingLength = length;
+		int destinationPos = offset;
+		while (remainingLength > 0) {
+			int lengthInBuffer = Math.min(remainingLength, getCurrentRemaining());
+			ByteBuffer source = buffers[index].duplicate();
+			((Buffer)source).position(position);
+			source.get(destination, destinationPos, lengthInBuffer);
+			destinationPos += lengthInBuffer;
+			position += lengthInBuffer;
+			remainingLength -= lengthInBuffer;
+			skipExhaustedBuffers();
+		}
+	}
+
+	/**
+	 * copies the next length bytes of the sequence to the given buffer starting at the given (absolute) position
+	 */
+	public void get(ByteBuffer destination, int destinationPosition, int length) {
+		int remainingLength = length;
+		ByteBuffer target = destination.duplicate();
+		((Buffer)target).position(destinationPosition);
+		while (remainingLength > 0) {
+			int lengthInBuffer = Math.min(remainingLength, getCurrentRemaining());
+			ByteBuffer source = buffers[index].duplicate();
+			((Buffer)source).position(position);
+			((Buffer)source).limit(position + lengthInBuffer);
+			target.put(source);
+			position += lengthInBuffer;
+			remainingLength -= lengthInBuffer;
+			skipExhaustedBuffers();
+		}
+	}
+	
+	/**
+	 * copies the given bytes to the sequence
+	 */
+	public void put(byte[] source, int offset, int length) {
+		int remainingLength = length;
+		int sourcePos = offset;
+		while (remainingLength > 0) {
+			int lengthInBuffer = Math.min(remainingLength, getCurrentRemaining());
+			ByteBuffer destination = buffers[index].duplicate();
+			((Buffer)destination).position(position);
+			destination.put(source, sourcePos, lengthInBuffer);
+			sourcePos += lengthInBuffer;
+			position += lengthInBuffer;
+			remainingLength -= lengthInBuffer;
+			skipExhaustedBuffers();
+		}
+	}
+
+	/**
+	 * sets the positions of the buffers to the current position of the sequence
+	 */
+	public void commit() {
+		for (int i = 0; i < index; i++) {
+			((Buffer)buffers[i]).position(buffers[i].limit());
+		}
+		if (index < buffers.length) {
+			((Buffer)buffers[index]).position(position);
+		}
+	}
+
+	private void skipExhaustedBuffers() {
+		while ((index < buffers.length) && (position >= buffers[index].limit())) {
+			index ++;
+			if (index < buffers.length) {
+				position = buffers[index].position();
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package de.bright_side.beam;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Determines the length of the decrypted data of an encrypted file without reading the whole file.
+ * If it is known that all blocks but the last one are full (stated by the format header), the length follows from the file size and 
+ * the header of the last block. Otherwise blocks before the last block may not be full (e.g. because encrypted files have been concatenated 
+ * or a stream has been flushed with BeamFlushPolicy.EMIT_PARTIAL_BLOCK), so the headers of all blocks are read in parallel.
+ *
+ * @author Philip Heyse
+ *
+ */
+class DecryptedLengthCalculator {
+	private int threadCount;
+	private int blockLength;
+	private int encryptedBlockLength;
+
+	protected DecryptedLengthCalculator(int blockLength, int threadCount) {
+		this.threadCount = threadCount;
+		this.blockLength = blockLength;
+		this.encryptedBlockLength = Beam.LENGTH_OF_BLOCK_SIZE_BYTES + blockLength;
+	}
+
+	/**
+	 * reads with positional reads only, so the position of the channel is not changed
+	 */
+	public long getDecryptedLength(FileChannel channel) throws Exception {
+		return getDecryptedLength(channel, 0, false);
+	}
+
+	/**
+	 * @param dataStart position of the first block in the file (after the format header)
+	 * @param interiorBlocksFull true if all blocks but the last one are known to be full, so only the header of the last block is read
+	 */
+	public long getDecryptedLength(FileChannel channel, long dataStart, boolean interiorBlocksFull) throws Exception {
+		long encryptedLength = channel.size() - dataStart;
+		if (encryptedLength % encryptedBlockLength != 0) {
+			throw new Exception("Length of encrypted data (" + encryptedLength + ") is not a multiple of the encrypted block length " + encryptedBlockLength + ". Data is corrupt");
+		}
+		long numberOfBlocks = encryptedLength / encryptedBlockLength;
+		if (numberOfBlocks == 0) {
+			return 0;
+		}
+		if (interiorBlocksFull) {
+			ByteBuffer header = ByteBuffer.allocate(Beam.LENGTH_OF_BLOCK_SIZE_BYTES);
+			return (numberOfBlocks - 1) * blockLength + readDataLength(channel, dataStart, numberOfBlocks - 1, header);
+		}
+		return scanHeaders(channel, dataStart, numberOfBlocks);
+	}
+
+	/**
+	 * reads the headers of all blocks, split into one range of blocks per thread
+	 */
+	private long scanHeaders(FileChannel channel, long dataStart, long numberOfBlocks) throws Exception {
+		int numberOfRanges = (int)Math.min(threadCount, numberOfBlocks);
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfRanges);
+		try {
+			List<Future<Long>> futures = new ArrayList<>();
+			for (int range = 0; range < numberOfRanges; range++) {
+				long firstBlock = numberOfBlocks * range / numberOfRanges;
+				long endBlock = numberOfBlocks * (range + 1) / numberOfRanges;
+				futures.add(executor.submit(() -> sumDataLengths(channel, dataStart, firstBlock, endBlock)));
+			}
+			long result = 0;
+			for (Future<Long> future: futures) {
+				try {
+					result += future.get();
+				} catch (ExecutionException e) {
+					throw new Exception("Could not read block headers: " + e.getCause().getMessage(), e.getCause());
+				}
+			}
+			return result;
+		} finally {
+			//: not shutdownNow as interrupting a thread that reads from the channel would close the channel
+			executor.shutdown();
+		}
+	}
+
+	private long sumDataLengths(FileChannel channel, long dataStart, long firstBlock, long endBlock) throws Exception {
+		ByteBuffer header = ByteBuffer.allocate(Beam.LENGTH_OF_BLOCK_SIZE_BYTES);
+		long result = 0;
+		for (long blockIndex = firstBlock; blockIndex < endBlock; blockIndex++) {
+			result += readDataLength(channel, dataStart, blockIndex, header);
+		}
+		return result;
+	}
+
+	private int readDataLength(FileChannel channel, long dataStart, long blockIndex, ByteBuffer header) throws Exception {
+		long position = dataStart + blockIndex * encryptedBlockLength;
+		((Buffer)header).clear();
+		while (header.hasRemaining()) {
+			if (channel.read(header, position + header.position()) < 0) {
+				throw new Exception("Unexpected end of file at position " + (position + header.position()));
+			}
+		}
+		int result = BeamUtil.getPosIntFrom2Bytes(header.get(0), header.get(1));
+		if (result > blockLength) {
+			throw new Exception("Data length " + result + " exceeds the block length " + blockLength);
+		}
+		return result;
+	}
+
+}
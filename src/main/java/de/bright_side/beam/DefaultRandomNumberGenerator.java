@@ -8,6 +8,7 @@ import java.util.concurrent.ThreadLocalRandom;
  *
  */
 class DefaultRandomNumberGenerator implements RandomNumberGenerator{
+	private static final int BYTES_IN_LONG = 8;
 	
 	@Override
 	public byte[] getRandomBytes(int length) {
@@ -15,5 +16,20 @@ class DefaultRandomNumberGenerator implements RandomNumberGenerator{
 		ThreadLocalRandom.current().nextBytes(result);
 		return result;
 	}
+
+	@Override
+	public void fill(byte[] dst, int off, int len) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int pos = off;
+		int end = off + len;
+		while (pos < end) {
+			long value = random.nextLong();
+			for (int i = 0; (i < BYTES_IN_LONG) && (pos < end); i++) {
+				dst[pos] = (byte)value;
+				value >>>= 8;
+				pos ++;
+			}
+		}
+	}
 	
 }
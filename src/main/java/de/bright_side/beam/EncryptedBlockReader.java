@@ -3,61 +3,72 @@ package de.bright_side.beam;
 import java.io.InputStream;
 
 /**
- * 
+ * Reads the encrypted blocks through a ReadAheadBuffer. The returned Block object is reused and its data points into the read-ahead buffer,
+ * so it is only valid until the next call of readNextBlock.
+ *
  * @author Philip Heyse
  *
  */
 class EncryptedBlockReader {
-	private InputStream input;
+	private ReadAheadBuffer input;
 	private int blockLength;
+	private int encryptedBlockLength;
+	private Block block = new Block();
 
 	public EncryptedBlockReader(InputStream input, int blockLength) {
-		this.input = input;
+		this(input, blockLength, ReadAheadBuffer.DEFAULT_READ_AHEAD_LENGTH);
+	}
+
+	public EncryptedBlockReader(InputStream input, int blockLength, int readAheadLength) {
 		this.blockLength = blockLength;
+		this.encryptedBlockLength = Beam.LENGTH_OF_BLOCK_SIZE_BYTES + blockLength;
+		this.input = new ReadAheadBuffer(input, encryptedBlockLength, readAheadLength);
 	}
 
 	public Block readNextBlock() throws Exception {
 		return readNextBlock(false);
 	}
-	
+
+	/**
+	 * @param skipDataOnly if true, the block data is skipped and only the length of the returned block is set
+	 */
 	public Block readNextBlock(boolean skipDataOnly) throws Exception {
-		Block result = new Block();
-		byte[] lengthBytes = BeamUtil.readMaximumAmountOfBytes(input, 2);
-		
-		//: end of file?
-		if ((lengthBytes == null) || (lengthBytes.length == 0)) {
-			return null;
-		}
-		
-		if (lengthBytes.length != 2) {
-			throw new Exception("Could not read 2 length bytes but only " + lengthBytes.length + ". File or stream is corrupt");
+		if (!input.ensureAvailable(Beam.LENGTH_OF_BLOCK_SIZE_BYTES)) {
+			//: end of file?
+			if (input.getAvailable() == 0) {
+				return null;
+			}
+			throw new Exception("Could not read 2 length bytes but only " + input.getAvailable() + ". File or stream is corrupt");
 		}
-		
-		int dataLength = BeamUtil.getPosIntFrom2Bytes(lengthBytes[0], lengthBytes[1]);
+
+		byte[] buffer = input.getBuffer();
+		int headerPosition = input.getPosition();
+		int dataLength = BeamUtil.getPosIntFrom2Bytes(buffer[headerPosition], buffer[headerPosition + 1]);
 		if (dataLength < 0) {
 			throw new Exception("Wrong data length: " + dataLength);
 		}
 		if (dataLength > blockLength) {
 			throw new Exception("Data length " + dataLength + " exceeds the block length " + blockLength);
 		}
-		result.setLength(dataLength);
+		block.setLength(dataLength);
 
 		if (skipDataOnly) {
+			input.consume(Beam.LENGTH_OF_BLOCK_SIZE_BYTES);
 			long skipped = input.skip(blockLength);
-			if (skipped < blockLength) {
-				//: skip did not work, then just read
-				BeamUtil.readExactAmountOfBytes(input, (int)(blockLength - skipped));
+			if (skipped != blockLength) {
+				throw new Exception("Expected data of length " + blockLength + " but could only skip " + skipped + " bytes");
 			}
-			return result;
+			block.setData(null);
+			return block;
 		}
-		
-		byte[] data = BeamUtil.readExactAmountOfBytes(input, blockLength);
-		if (data.length != blockLength) {
-			throw new Exception("Expected data of length " + blockLength + " but could only read " + data.length + " bytes");
+
+		if (!input.ensureAvailable(encryptedBlockLength)) {
+			throw new Exception("Expected data of length " + blockLength + " but could only read " + (input.getAvailable() - Beam.LENGTH_OF_BLOCK_SIZE_BYTES) + " bytes");
 		}
-		
-		result.setData(data);
-		return result;
+		block.setData(input.getBuffer());
+		block.setOffset(input.getPosition() + Beam.LENGTH_OF_BLOCK_SIZE_BYTES);
+		input.consume(encryptedBlockLength);
+		return block;
 	}
 
 }
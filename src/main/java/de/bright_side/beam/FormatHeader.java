@@ -0,0 +1,185 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Optional header in front of the encrypted blocks that describes the format:
+ * 8 magic bytes, format version, header length, flags, the block length in 3 bytes and a check byte over the bytes before it.
+ * Readers skip the whole header length, so later versions may append fields after the check byte.
+ * Data without header starts directly with the 2 bytes data length of the first block. The first 2 magic bytes only match such data
+ * if the first block contains 65535 bytes. Then the other 6 magic bytes and the check byte would have to match encrypted bytes, 
+ * so data without header is recognized as header with a probability of about 2^-56.
+ *
+ * @author Philip Heyse
+ *
+ */
+class FormatHeader {
+	protected static final int LENGTH = 15;
+	protected static final int VERSION = 1;
+	private static final byte[] MAGIC_BYTES = {0x7F, 0x7F, 'B', 'E', 'A', 'M', 0x1A, 0x0A};
+	private static final int VERSION_POS = MAGIC_BYTES.length;
+	private static final int CHECK_BYTE_POS = LENGTH - 1;
+	private static final int FLAG_COMPACT = 1;
+	private static final int FLAG_PARTIAL_BLOCKS = 2;
+	private static final int KNOWN_FLAGS = FLAG_COMPACT | FLAG_PARTIAL_BLOCKS;
+
+	private int headerLength;
+	private int blockLength;
+	private boolean compact;
+	private boolean partialBlocks;
+
+	protected FormatHeader(int headerLength, int blockLength, boolean compact, boolean partialBlocks) {
+		this.headerLength = headerLength;
+		this.blockLength = blockLength;
+		this.compact = compact;
+		this.partialBlocks = partialBlocks;
+	}
+
+	/**
+	 * @return the number of bytes of the header including fields unknown to this version
+	 */
+	public int getHeaderLength() {
+		return headerLength;
+	}
+
+	public int getBlockLength() {
+		return blockLength;
+	}
+
+	/**
+	 * @return true if the last block is shorter than the block length (see Beam.setCompactMode)
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * @return true if blocks before the last block may not be full (see BeamFlushPolicy.EMIT_PARTIAL_BLOCK). 
+	 * Otherwise the decrypted length follows from the data length and the header of the last block
+	 */
+	public boolean hasPartialBlocks() {
+		return partialBlocks;
+	}
+
+	public static byte[] create(int blockLength, boolean compact, boolean partialBlocks) {
+		byte[] result = new byte[LENGTH];
+		write(blockLength, compact, partialBlocks, result, 0);
+		return result;
+	}
+
+	public static void write(int blockLength, boolean compact, boolean partialBlocks, byte[] output, int offset) {
+		System.arraycopy(MAGIC_BYTES, 0, output, offset, MAGIC_BYTES.length);
+		output[offset + VERSION_POS] = (byte)VERSION;
+		output[offset + VERSION_POS + 1] = (byte)LENGTH;
+		output[offset + VERSION_POS + 2] = (byte)((compact ? FLAG_COMPACT : 0) | (partialBlocks ? FLAG_PARTIAL_BLOCKS : 0));
+		output[offset + VERSION_POS + 3] = (byte)(blockLength >>> 16);
+		output[offset + VERSION_POS + 4] = (byte)(blockLength >>> 8);
+		output[offset + VERSION_POS + 5] = (byte)blockLength;
+		output[offset + CHECK_BYTE_POS] = getCheckByte(output, offset);
+	}
+
+	/**
+	 * @return the lowest byte of the CRC-32 of the header bytes before the check byte
+	 */
+	protected static byte getCheckByte(byte[] data, int offset) {
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, CHECK_BYTE_POS);
+		return (byte)crc.getValue();
+	}
+
+	/**
+	 * @return the header at the start of the data or null if the data does not start with a valid header
+	 */
+	public static FormatHeader read(byte[] data, int offset, int length) {
+		if (length < LENGTH) {
+			return null;
+		}
+		FormatHeader result = parse(data, offset);
+		if ((result == null) || (result.getHeaderLength() > length)) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * parses the first LENGTH bytes starting at offset
+	 */
+	private static FormatHeader parse(byte[] data, int offset) {
+		for (int i = 0; i < MAGIC_BYTES.length; i++) {
+			if (data[offset + i] != MAGIC_BYTES[i]) {
+				return null;
+			}
+		}
+		if ((data[offset + VERSION_POS] != VERSION) || (data[offset + CHECK_BYTE_POS] != getCheckByte(data, offset))) {
+			return null;
+		}
+		int headerLength = data[offset + VERSION_POS + 1] & 0xFF;
+		int flags = data[offset + VERSION_POS + 2] & 0xFF;
+		int blockLength = ((data[offset + VERSION_POS + 3] & 0xFF) << 16) | ((data[offset + VERSION_POS + 4] & 0xFF) << 8) | (data[offset + VERSION_POS + 5] & 0xFF);
+		if ((headerLength < LENGTH) || ((flags & ~KNOWN_FLAGS) != 0) || (blockLength == 0)) {
+			return null;
+		}
+		return new FormatHeader(headerLength, blockLength, (flags & FLAG_COMPACT) != 0, (flags & FLAG_PARTIAL_BLOCKS) != 0);
+	}
+
+	/**
+	 * reads the header from the start of the file with positional reads, so the position of the channel is not changed
+	 * @return the header or null if the file does not start with a valid header
+	 */
+	public static FormatHeader read(FileChannel channel) throws IOException {
+		ByteBuffer data = ByteBuffer.allocate(LENGTH);
+		while (data.hasRemaining()) {
+			if (channel.read(data, data.position()) < 0) {
+				break;
+			}
+		}
+		if (data.hasRemaining()) {
+			return null;
+		}
+		FormatHeader result = parse(data.array(), 0);
+		if ((result == null) || (result.getHeaderLength() > channel.size())) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * reads the header from the start of the input. If there is no header, the read bytes are pushed back to the input.
+	 * @param input must be able to push back at least LENGTH bytes
+	 * @return the header or null if the input does not start with a valid header
+	 */
+	public static FormatHeader read(PushbackInputStream input) throws IOException {
+		byte[] data = new byte[LENGTH];
+		int length;
+		try {
+			length = BeamUtil.readMaximumAmountOfBytes(input, data, 0, LENGTH);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+		FormatHeader result = null;
+		if (length == LENGTH) {
+			result = parse(data, 0);
+		}
+		if (result == null) {
+			input.unread(data, 0, length);
+			return null;
+		}
+		//: skip the fields that have been added by later versions
+		int remainingLength = result.getHeaderLength() - LENGTH;
+		while (remainingLength > 0) {
+			long skippedLength = input.skip(remainingLength);
+			if (skippedLength <= 0) {
+				throw new IOException("Encrypted data ends within the format header. Data is corrupt");
+			}
+			remainingLength -= skippedLength;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,44 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+
+/**
+ * Hex with upper case letters as created by BeamUtil.byteArrayToHexString. Lower case letters are accepted when decoding.
+ *
+ * @author Philip Heyse
+ *
+ */
+class HexCodec extends TextCodec {
+
+	@Override
+	public int getBytesPerGroup() {
+		return 1;
+	}
+
+	@Override
+	public int getCharsPerGroup() {
+		return 2;
+	}
+
+	@Override
+	public int encode(byte[] data, int offset, int length, char[] output, int outputOffset) {
+		BeamUtil.writeHexChars(data, offset, length, output, outputOffset);
+		return 2 * length;
+	}
+
+	@Override
+	protected void encodeGroup(byte[] data, int offset, int length, char[] output, int outputOffset) {
+		BeamUtil.writeHexChars(data, offset, length, output, outputOffset);
+	}
+
+	@Override
+	protected void decodeGroup(char[] chars, int offset, int length, byte[] output, int outputOffset) throws IOException {
+		int high = BeamUtil.hexToBin(chars[offset]);
+		int low = BeamUtil.hexToBin(chars[offset + 1]);
+		if (high == -1 || low == -1) {
+			throw new IOException("Hex data contains illegal character: '" + chars[offset] + chars[offset + 1] + "'");
+		}
+		output[outputOffset] = (byte)(high * 16 + low);
+	}
+
+}
@@ -14,6 +14,101 @@ class KeyCreator {
 		return result;
 	}
 
+	/**
+	 * @return length of the key that create returns for the password
+	 */
+	protected long getKeyLength(byte[] password) {
+		long simpleKeyLength = 2L * ((password.length + 1) / 2) * (password.length / 2);
+		return simpleKeyLength * password.length * 2;
+	}
+
+	/**
+	 * Returns the same bytes as the key created by create would contain from position start on (continuing at the beginning of the key 
+	 * when its end is reached), but without creating the key. Each key byte is computed from the password bytes it is made of, so only length bytes are allocated.
+	 * @param start position in the key
+	 * @param length number of key bytes to return
+	 */
+	protected byte[] createKeyBytes(byte[] password, long start, int length) {
+		long keyLength = getKeyLength(password);
+		byte[] result = new byte[length];
+		long keyPos = start % keyLength;
+		for (int i = 0; i < length; i++) {
+			result[i] = getKeyByte(password, keyPos);
+			keyPos ++;
+			if (keyPos >= keyLength) {
+				keyPos = 0;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * computes the byte at the given position of the key that applyPassword(generateKeyOfEvenAndOddBytes(password), password) returns
+	 */
+	private byte getKeyByte(byte[] password, long keyPos) {
+		int passwordLength = password.length;
+		long simpleKeyLength = 2L * ((passwordLength + 1) / 2) * (passwordLength / 2);
+		long forwardLength = simpleKeyLength * passwordLength;
+
+		//: applyPassword: first each simple key byte plus each password byte forward, then plus each password byte backwards
+		int passwordPos;
+		long simpleKeyPos;
+		if (keyPos < forwardLength) {
+			simpleKeyPos = keyPos / passwordLength;
+			passwordPos = (int)(keyPos % passwordLength);
+		} else {
+			simpleKeyPos = (keyPos - forwardLength) / passwordLength;
+			passwordPos = passwordLength - 1 - (int)((keyPos - forwardLength) % passwordLength);
+		}
+		return (byte)(getSimpleKeyByte(password, simpleKeyPos) + password[passwordPos]);
+	}
+
+	/**
+	 * computes the byte at the given position of the key that generateKeyOfEvenAndOddBytes(password) returns
+	 */
+	private byte getSimpleKeyByte(byte[] password, long simpleKeyPos) {
+		int numberOfOddBytes = password.length / 2;
+		long halfLength = (long)((password.length + 1) / 2) * numberOfOddBytes;
+
+		//: generateKeyOfEvenAndOddBytes: first each even byte plus each odd byte, then each even byte minus each odd byte
+		boolean subtract = simpleKeyPos >= halfLength;
+		long pos = subtract ? simpleKeyPos - halfLength : simpleKeyPos;
+		byte evenByte = password[(int)(pos / numberOfOddBytes) * 2];
+		byte oddByte = password[(int)(pos % numberOfOddBytes) * 2 + 1];
+		return subtract ? (byte)(evenByte - oddByte) : (byte)(evenByte + oddByte);
+	}
+
+	/**
+	 * Each block starts at the same position in the key (digit sum of the password) so the key byte that is applied at a position 
+	 * of the encrypted block is the same in every block.
+	 * @return the key bytes for each position of the encrypted block
+	 */
+	protected byte[] createKeyStream(byte[] key, int digitSum, int blockLength) {
+		byte[] result = new byte[blockLength];
+		int keyPos = digitSum % key.length;
+		for (int i = 0; i < blockLength; i++) {
+			result[i] = key[keyPos];
+			keyPos ++;
+			if (keyPos >= key.length) {
+				keyPos = 0;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param keyStream key bytes for each position of the encrypted block
+	 * @param inversePosSwitchTable table where the index is the position in the plain block and the value is the position in the encrypted block
+	 * @return the key bytes for each position of the plain block
+	 */
+	protected byte[] createKeyStreamInPlainOrder(byte[] keyStream, int[] inversePosSwitchTable) {
+		byte[] result = new byte[keyStream.length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = keyStream[inversePosSwitchTable[i]];
+		}
+		return result;
+	}
+
 	protected byte[] applyPassword(byte[] simpleKey, byte[] password) {
 		byte[] result = new byte[simpleKey.length * password.length * 2];
 		int resultPos = 0;
@@ -0,0 +1,48 @@
+package de.bright_side.beam;
+
+/**
+ * The tables and key streams derived from a password and a block length. Instances are not changed after they have been created
+ * so they may be shared between Beam instances and threads.
+ * 
+ * @author Philip Heyse
+ *
+ */
+class KeyMaterial {
+	/** estimated memory of an instance apart from the arrays (object headers and array headers)*/
+	private static final int BASE_WEIGHT = 128;
+
+	private final int[] posSwitchTable;
+	private final int[] inversePosSwitchTable;
+	private final int[] cycleStarts;
+	private final byte[] keyStream;
+	private final byte[] keyStreamInPlainOrder;
+
+	protected KeyMaterial(byte[] password, int blockLength) {
+		KeyCreator keyCreator = new KeyCreator();
+		PosSwitchMapCreator posSwitchMapCreator = new PosSwitchMapCreator();
+		int digitSum = BeamUtil.getDigitSum(password);
+		//: only the key bytes that are used are computed instead of creating the whole key which grows with the third power of the password length
+		posSwitchTable = posSwitchMapCreator.create(keyCreator.createKeyBytes(password, 0, blockLength), blockLength);
+		inversePosSwitchTable = posSwitchMapCreator.createInverse(posSwitchTable);
+		cycleStarts = posSwitchMapCreator.createCycleStarts(posSwitchTable);
+		keyStream = keyCreator.createKeyBytes(password, digitSum, blockLength);
+		keyStreamInPlainOrder = keyCreator.createKeyStreamInPlainOrder(keyStream, inversePosSwitchTable);
+	}
+
+	public BlockEncryptor createBlockEncryptor() {
+		return new BlockEncryptor(posSwitchTable, cycleStarts, keyStream);
+	}
+
+	public BlockDecryptor createBlockDecryptor() {
+		return new BlockDecryptor(inversePosSwitchTable, keyStreamInPlainOrder);
+	}
+
+	/**
+	 * @return estimated number of bytes retained by this instance
+	 */
+	public long getWeight() {
+		return BASE_WEIGHT + 4L * (posSwitchTable.length + inversePosSwitchTable.length + cycleStarts.length) 
+				+ keyStream.length + keyStreamInPlainOrder.length;
+	}
+
+}
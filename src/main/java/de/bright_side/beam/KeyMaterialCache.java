@@ -0,0 +1,163 @@
+package de.bright_side.beam;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Process-wide cache of key material so that Beam instances with the same password and block length share the result of init.
+ * The entries are identified by an HMAC of password and block length with a random key that is created once per process,
+ * so neither the password nor a value that could be used to check guessed passwords outside of this process is kept as key.
+ * If the total weight (estimated memory) of the entries exceeds the maximum weight, the least recently used entries are evicted.
+ * The entries are kept in access order, so each access and each eviction takes constant time under the lock of the cache.
+ *
+ * @author Philip Heyse
+ *
+ */
+class KeyMaterialCache {
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	private static final int MAC_KEY_LENGTH = 32;
+	private static final byte[] MAC_KEY = createMacKey();
+	private static final KeyMaterialCache SHARED_INSTANCE = new KeyMaterialCache(0);
+
+	/** least recently used entry first*/
+	private final LinkedHashMap<CacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalWeight = 0;
+	private volatile long maximumWeight;
+
+	private static class Entry {
+		private final KeyMaterial keyMaterial;
+		private final long weight;
+
+		public Entry(KeyMaterial keyMaterial) {
+			this.keyMaterial = keyMaterial;
+			this.weight = keyMaterial.getWeight();
+		}
+	}
+
+	/**
+	 * the HMAC of password and block length, compared by content
+	 */
+	private static class CacheKey {
+		private final byte[] mac;
+		private final int hashCode;
+
+		public CacheKey(byte[] mac) {
+			this.mac = mac;
+			this.hashCode = Arrays.hashCode(mac);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return (other instanceof CacheKey) && (MessageDigest.isEqual(mac, ((CacheKey)other).mac));
+		}
+	}
+
+	/**
+	 * @param maximumWeight maximum total weight of all entries in bytes. 0 disables the cache
+	 */
+	protected KeyMaterialCache(long maximumWeight) {
+		this.maximumWeight = maximumWeight;
+	}
+
+	public static KeyMaterialCache getSharedInstance() {
+		return SHARED_INSTANCE;
+	}
+
+	public boolean isEnabled() {
+		return maximumWeight > 0;
+	}
+
+	/**
+	 * @param maximumWeight maximum total weight of all entries in bytes. 0 disables the cache and removes all entries
+	 */
+	public synchronized void setMaximumWeight(long maximumWeight) {
+		this.maximumWeight = maximumWeight;
+		evictIfNeeded();
+	}
+
+	/**
+	 * returns the cached key material for the password and block length or creates it
+	 */
+	public KeyMaterial get(byte[] password, int blockLength) {
+		CacheKey key = createKey(password, blockLength);
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				return entry.keyMaterial;
+			}
+		}
+		//: created without lock. If another thread creates the same entry at the same time, the entry that was put first is used
+		Entry createdEntry = new Entry(new KeyMaterial(password, blockLength));
+		synchronized (this) {
+			if (createdEntry.weight > maximumWeight) {
+				return createdEntry.keyMaterial;
+			}
+			Entry existingEntry = entries.get(key);
+			if (existingEntry != null) {
+				return existingEntry.keyMaterial;
+			}
+			entries.put(key, createdEntry);
+			totalWeight += createdEntry.weight;
+			evictIfNeeded();
+			return createdEntry.keyMaterial;
+		}
+	}
+
+	public synchronized long getTotalWeight() {
+		return totalWeight;
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		totalWeight = 0;
+	}
+
+	/**
+	 * removes the least recently used entries until the total weight does not exceed the maximum weight. Must be called with the lock of the cache
+	 */
+	private void evictIfNeeded() {
+		Iterator<Map.Entry<CacheKey, Entry>> iterator = entries.entrySet().iterator();
+		while ((totalWeight > maximumWeight) && (iterator.hasNext())) {
+			totalWeight -= iterator.next().getValue().weight;
+			iterator.remove();
+		}
+	}
+
+	private CacheKey createKey(byte[] password, int blockLength) {
+		try {
+			Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(new SecretKeySpec(MAC_KEY, MAC_ALGORITHM));
+			mac.update(password);
+			mac.update(ByteBuffer.allocate(4).putInt(blockLength).array());
+			return new CacheKey(mac.doFinal());
+		} catch (GeneralSecurityException e) {
+			//: cannot happen as every Java platform must support HmacSHA256
+			throw new IllegalStateException("MAC algorithm " + MAC_ALGORITHM + " is not available", e);
+		}
+	}
+
+	private static byte[] createMacKey() {
+		byte[] result = new byte[MAC_KEY_LENGTH];
+		new SecureRandom().nextBytes(result);
+		return result;
+	}
+
+}
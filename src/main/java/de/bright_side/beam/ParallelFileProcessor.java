@@ -0,0 +1,227 @@
+package de.bright_side.beam;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encrypts and decrypts whole files by processing ranges of blocks (chunks) on several threads.
+ * As each encrypted block has the same length and the blocks are independent, the offset of each chunk in the output file is known up front.
+ * Each worker thread reads a chunk with positional reads into its own reusable arrays, processes it with the array methods of Beam and
+ * writes it with positional writes. So the memory usage is bounded by two chunks per thread and no file regions are mapped,
+ * which would create one mapping per chunk for very large files that is only released by the garbage collector.
+ *
+ * @author Philip Heyse
+ *
+ */
+class ParallelFileProcessor {
+	protected static final int DEFAULT_CHUNK_LENGTH = 1024 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private Beam beam;
+	private int threadCount;
+	private int blockLength;
+	private int encryptedBlockLength;
+	private int blocksPerChunk;
+
+	/**
+	 * processes a chunk with the given index using the arrays of the worker thread
+	 * @return false to stop all workers
+	 */
+	private interface ChunkTask {
+		boolean process(long chunk, byte[] plainChunk, byte[] encryptedChunk) throws Exception;
+	}
+
+	/**
+	 * @param chunkLength length of the plain data that is processed in one task. Rounded down to full blocks but at least one block
+	 */
+	protected ParallelFileProcessor(Beam beam, int threadCount, int chunkLength) {
+		this.beam = beam;
+		this.threadCount = threadCount;
+		this.blockLength = beam.getBlockLength();
+		this.encryptedBlockLength = Beam.LENGTH_OF_BLOCK_SIZE_BYTES + blockLength;
+		this.blocksPerChunk = Math.max(1, chunkLength / blockLength);
+	}
+
+	public void encrypt(Path input, Path output) throws Exception {
+		beam.init();
+		try (FileChannel inputChannel = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel outputChannel = openOutput(output)) {
+			long plainLength = inputChannel.size();
+			setSize(outputChannel, beam.getEncryptedLength(plainLength));
+			long numberOfChunks = getNumberOfChunks(plainLength, blockLength);
+			runWorkers(numberOfChunks, (chunk, plainChunk, encryptedChunk) -> {
+				long plainPos = chunk * blocksPerChunk * blockLength;
+				long encryptedPos = chunk * blocksPerChunk * encryptedBlockLength;
+				int chunkPlainLength = (int)Math.min(blocksPerChunk * blockLength, plainLength - plainPos);
+				readFully(inputChannel, plainChunk, chunkPlainLength, plainPos);
+				int chunkEncryptedLength = beam.encryptInto(plainChunk, 0, chunkPlainLength, encryptedChunk, 0);
+				writeFully(outputChannel, encryptedChunk, chunkEncryptedLength, encryptedPos);
+				return true;
+			});
+		}
+	}
+
+	/**
+	 * decrypts the file assuming that all blocks but the last one are full (which is the case for files created by Beam).
+	 * If a chunk contains a block that is not full (e.g. because encrypted files have been concatenated) the file is decrypted sequentially instead.
+	 */
+	public void decrypt(Path input, Path output) throws Exception {
+		beam.init();
+		boolean decryptedInParallel;
+		try (FileChannel inputChannel = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel outputChannel = openOutput(output)) {
+			decryptedInParallel = decryptInParallel(inputChannel, outputChannel);
+		}
+		if (!decryptedInParallel) {
+			try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(input), BUFFER_SIZE);
+					OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(output), BUFFER_SIZE)){
+				beam.decrypt(inputStream, outputStream, null);
+			}
+		}
+	}
+
+	/**
+	 * @return false if the file contains blocks that are not full before the last block
+	 */
+	private boolean decryptInParallel(FileChannel inputChannel, FileChannel outputChannel) throws Exception {
+		long encryptedLength = inputChannel.size();
+		if (encryptedLength % encryptedBlockLength != 0) {
+			throw new Exception("Length of encrypted data (" + encryptedLength + ") is not a multiple of the encrypted block length " + encryptedBlockLength + ". Data is corrupt");
+		}
+		long numberOfBlocks = encryptedLength / encryptedBlockLength;
+		if (numberOfBlocks == 0) {
+			outputChannel.truncate(0);
+			return true;
+		}
+		int lastDataLength = readDataLength(inputChannel, (numberOfBlocks - 1) * encryptedBlockLength);
+		setSize(outputChannel, (numberOfBlocks - 1) * blockLength + lastDataLength);
+
+		AtomicBoolean notFullBlockFound = new AtomicBoolean(false);
+		long numberOfChunks = (numberOfBlocks + blocksPerChunk - 1) / blocksPerChunk;
+		runWorkers(numberOfChunks, (chunk, plainChunk, encryptedChunk) -> {
+			long firstBlock = chunk * blocksPerChunk;
+			int blocksInChunk = (int)Math.min(blocksPerChunk, numberOfBlocks - firstBlock);
+			boolean lastChunk = firstBlock + blocksInChunk == numberOfBlocks;
+			readFully(inputChannel, encryptedChunk, blocksInChunk * encryptedBlockLength, firstBlock * encryptedBlockLength);
+			//: the last block of the file is the only one that may be shorter
+			int blocksToCheck = lastChunk ? blocksInChunk - 1 : blocksInChunk;
+			for (int block = 0; block < blocksToCheck; block++) {
+				int pos = block * encryptedBlockLength;
+				if (BeamUtil.getPosIntFrom2Bytes(encryptedChunk[pos], encryptedChunk[pos + 1]) != blockLength) {
+					notFullBlockFound.set(true);
+					return false;
+				}
+			}
+			int chunkPlainLength = beam.decryptInto(encryptedChunk, 0, blocksInChunk * encryptedBlockLength, plainChunk, 0);
+			writeFully(outputChannel, plainChunk, chunkPlainLength, firstBlock * blockLength);
+			return true;
+		});
+		return !notFullBlockFound.get();
+	}
+
+	private int readDataLength(FileChannel channel, long position) throws Exception {
+		byte[] header = new byte[Beam.LENGTH_OF_BLOCK_SIZE_BYTES];
+		readFully(channel, header, header.length, position);
+		int result = BeamUtil.getPosIntFrom2Bytes(header[0], header[1]);
+		if (result > blockLength) {
+			throw new Exception("Data length " + result + " exceeds the block length " + blockLength);
+		}
+		return result;
+	}
+
+	private void readFully(FileChannel channel, byte[] data, int length, long position) throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new Exception("Unexpected end of file at position " + (position + buffer.position()));
+			}
+		}
+	}
+
+	private void writeFully(FileChannel channel, byte[] data, int length, long position) throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	private long getNumberOfChunks(long length, int lengthPerBlock) {
+		long lengthPerChunk = (long)blocksPerChunk * lengthPerBlock;
+		return (length + lengthPerChunk - 1) / lengthPerChunk;
+	}
+
+	private FileChannel openOutput(Path output) throws Exception {
+		return FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * sets the size of the file before the chunks are written so that the threads don't grow the file concurrently
+	 */
+	private void setSize(FileChannel channel, long size) throws Exception {
+		channel.truncate(size);
+		if ((size > 0) && (channel.size() < size)) {
+			channel.write(ByteBuffer.allocate(1), size - 1);
+		}
+	}
+
+	/**
+	 * runs one worker per thread. Each worker allocates its arrays once and takes the next chunk until all chunks are processed
+	 * or a task has returned false
+	 */
+	private void runWorkers(long numberOfChunks, ChunkTask task) throws Exception {
+		if (numberOfChunks == 0) {
+			return;
+		}
+		int numberOfWorkers = (int)Math.min(threadCount, numberOfChunks);
+		AtomicLong nextChunk = new AtomicLong(0);
+		AtomicBoolean stopped = new AtomicBoolean(false);
+		List<Callable<Boolean>> workers = new ArrayList<>();
+		for (int i = 0; i < numberOfWorkers; i++) {
+			workers.add(() -> {
+				byte[] plainChunk = new byte[blocksPerChunk * blockLength];
+				byte[] encryptedChunk = new byte[blocksPerChunk * encryptedBlockLength];
+				long chunk = nextChunk.getAndIncrement();
+				while ((chunk < numberOfChunks) && (!stopped.get())) {
+					if (!task.process(chunk, plainChunk, encryptedChunk)) {
+						stopped.set(true);
+					}
+					chunk = nextChunk.getAndIncrement();
+				}
+				return true;
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfWorkers);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (Callable<Boolean> worker: workers) {
+				futures.add(executor.submit(worker));
+			}
+			for (Future<Boolean> future: futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					throw new Exception("Could not process file: " + e.getCause().getMessage(), e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+package de.bright_side.beam;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypts and decrypts streams in a pipeline: the calling thread reads batches of blocks, a pool of workers transforms
+ * the batches in parallel and a writer thread writes them in the original order. The number of blocks in flight is limited
+ * so that the memory usage is bounded: besides the batches in the queue, the batch that the reader is filling and the batch that the writer
+ * is writing are in flight, so the queue holds two batches less than the maximum number of batches in flight.
+ *
+ * @author Philip Heyse
+ *
+ */
+class ParallelStreamProcessor {
+	private static final int MAXIMUM_BATCH_LENGTH = 256 * 1024;
+	private static final long QUEUE_OFFER_TIMEOUT_MILLIS = 100;
+	/** the batch that is being read and the batch that is being written*/
+	private static final int BATCHES_OUTSIDE_OF_QUEUE = 2;
+	private static final Future<Batch> END_OF_DATA = CompletableFuture.completedFuture(null);
+
+	private Beam beam;
+	private int threadCount;
+	private int blockLength;
+	private int encryptedBlockLength;
+	private int blocksPerBatch;
+	private int maximumBatchesInFlight;
+
+	private static class Batch {
+		private byte[] data;
+		private int length;
+		/** the encrypted form of the batch which contains the data length of each block*/
+		private byte[] encryptedData;
+		private int encryptedLength;
+
+		public Batch(byte[] data, int length, byte[] encryptedData, int encryptedLength) {
+			this.data = data;
+			this.length = length;
+			this.encryptedData = encryptedData;
+			this.encryptedLength = encryptedLength;
+		}
+	}
+
+	/**
+	 * @param maximumBlocksInFlight maximum number of blocks that are read but not yet written. As at least one batch is being read, 
+	 * one is queued and one is being written, at least 3 blocks are in flight
+	 */
+	protected ParallelStreamProcessor(Beam beam, int threadCount, int maximumBlocksInFlight) {
+		this.beam = beam;
+		this.threadCount = threadCount;
+		this.blockLength = beam.getBlockLength();
+		this.encryptedBlockLength = Beam.LENGTH_OF_BLOCK_SIZE_BYTES + blockLength;
+		//: one queued batch per thread so that all threads can work
+		this.blocksPerBatch = Math.max(1, Math.min(MAXIMUM_BATCH_LENGTH / blockLength, maximumBlocksInFlight / (threadCount + BATCHES_OUTSIDE_OF_QUEUE)));
+		this.maximumBatchesInFlight = Math.max(BATCHES_OUTSIDE_OF_QUEUE + 1, maximumBlocksInFlight / blocksPerBatch);
+	}
+
+	public void encrypt(InputStream input, OutputStream output, BeamProgressListener listener) throws Exception {
+		process(input, output, listener, true);
+	}
+
+	public void decrypt(InputStream input, OutputStream output, BeamProgressListener listener) throws Exception {
+		process(input, output, listener, false);
+	}
+
+	private void process(InputStream input, OutputStream output, BeamProgressListener listener, boolean encrypt) throws Exception {
+		beam.init();
+		int batchLength = blocksPerBatch * (encrypt ? blockLength : encryptedBlockLength);
+		BlockingQueue<Future<Batch>> queue = new ArrayBlockingQueue<>(maximumBatchesInFlight - BATCHES_OUTSIDE_OF_QUEUE);
+		ExecutorService workers = Executors.newFixedThreadPool(threadCount);
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		try {
+			Future<long[]> writerResult = writer.submit(() -> writeBatches(queue, output, listener));
+			boolean endOfData = false;
+			while (!endOfData) {
+				byte[] data = new byte[batchLength];
+				int length = readFully(input, data);
+				Future<Batch> batch;
+				if (length == 0) {
+					endOfData = true;
+					batch = END_OF_DATA;
+				} else {
+					if ((!encrypt) && (length % encryptedBlockLength != 0)) {
+						throw new Exception("Expected data of length " + encryptedBlockLength + " per block but could only read "
+								+ (length % encryptedBlockLength) + " bytes of the last block. File or stream is corrupt");
+					}
+					batch = workers.submit(() -> encrypt ? encrypt(data, length) : decrypt(data, length));
+				}
+				while (!queue.offer(batch, QUEUE_OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+					if (writerResult.isDone()) {
+						//: the writer stopped because of an error which is thrown by getResult
+						getResult(writerResult);
+					}
+				}
+			}
+			long[] amounts = getResult(writerResult);
+			if (listener != null) {
+				listener.finishedSuccessfully(amounts[0], amounts[1]);
+			}
+		} finally {
+			workers.shutdownNow();
+			writer.shutdownNow();
+		}
+	}
+
+	private Batch encrypt(byte[] plainData, int length) throws Exception {
+		byte[] result = new byte[(int)beam.getEncryptedLength(length)];
+		beam.encryptInto(plainData, 0, length, result, 0);
+		return new Batch(result, result.length, result, result.length);
+	}
+
+	private Batch decrypt(byte[] encryptedData, int length) throws Exception {
+		byte[] result = new byte[beam.getDecryptedLength(encryptedData, 0, length)];
+		beam.decryptInto(encryptedData, 0, length, result, 0);
+		return new Batch(result, result.length, encryptedData, length);
+	}
+
+	/**
+	 * @return amount of plain and encrypted bytes processed
+	 */
+	private long[] writeBatches(BlockingQueue<Future<Batch>> queue, OutputStream output, BeamProgressListener listener) throws Exception {
+		long plainBytesProcessed = 0;
+		long encryptedBytesProcessed = 0;
+		Future<Batch> batchFuture = queue.take();
+		while (batchFuture != END_OF_DATA) {
+			Batch batch = getResult(batchFuture);
+			output.write(batch.data, 0, batch.length);
+			//: the listener is informed for each block as in the sequential processing
+			for (int pos = 0; pos < batch.encryptedLength; pos += encryptedBlockLength) {
+				plainBytesProcessed += BeamUtil.getPosIntFrom2Bytes(batch.encryptedData[pos], batch.encryptedData[pos + 1]);
+				encryptedBytesProcessed += blockLength;
+				if (listener != null) {
+					listener.bytesProcessed(plainBytesProcessed, encryptedBytesProcessed);
+				}
+			}
+			batchFuture = queue.take();
+		}
+		return new long[] {plainBytesProcessed, encryptedBytesProcessed};
+	}
+
+	private <T> T getResult(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception)cause;
+			}
+			throw new Exception(cause);
+		}
+	}
+
+	/**
+	 * @return number of bytes read which is only less than data.length at the end of the stream
+	 */
+	private int readFully(InputStream input, byte[] data) throws Exception {
+		int result = 0;
+		while (result < data.length) {
+			int readLength = input.read(data, result, data.length - result);
+			if (readLength < 0) {
+				break;
+			}
+			result += readLength;
+		}
+		return result;
+	}
+
+}
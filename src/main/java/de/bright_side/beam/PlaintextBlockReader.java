@@ -3,41 +3,45 @@ package de.bright_side.beam;
 import java.io.InputStream;
 
 /**
- * 
+ * Reads the plain blocks through a ReadAheadBuffer. The returned Block object is reused and its data points into the read-ahead buffer,
+ * so it is only valid until the next call of readNextBlock.
+ *
  * @author Philip Heyse
  *
  */
 class PlaintextBlockReader {
-	private InputStream input;
+	private ReadAheadBuffer input;
 	private int blockLength;
 	private RandomNumberGenerator randomNumberGenerator;
+	private Block block = new Block();
 
 	protected PlaintextBlockReader(InputStream input, int blockLength, RandomNumberGenerator randomNumberGenerator) {
-		this.input = input;
+		this(input, blockLength, randomNumberGenerator, ReadAheadBuffer.DEFAULT_READ_AHEAD_LENGTH);
+	}
+
+	protected PlaintextBlockReader(InputStream input, int blockLength, RandomNumberGenerator randomNumberGenerator, int readAheadLength) {
+		this.input = new ReadAheadBuffer(input, blockLength, readAheadLength);
 		this.blockLength = blockLength;
 		this.randomNumberGenerator = randomNumberGenerator;
 	}
 
 	public Block readNextBlock() throws Exception {
-		Block result = new Block();
-		byte[] data = BeamUtil.readMaximumAmountOfBytes(input, blockLength);
+		boolean fullBlock = input.ensureAvailable(blockLength);
+		int dataLength = Math.min(blockLength, input.getAvailable());
 		//: end of file?
-		if ((data == null) || (data.length == 0)) {
+		if (dataLength == 0) {
 			return null;
 		}
-		result.setLength(data.length);
-		
-		//: read full block?
-		if (data.length == blockLength) {
-			result.setData(data);
-			return result;
+		block.setData(input.getBuffer());
+		block.setOffset(input.getPosition());
+		block.setLength(dataLength);
+		input.consume(dataLength);
+
+		if (!fullBlock) {
+			//: fill rest of block with random numbers. The buffer always has space for a whole block at the position
+			randomNumberGenerator.fill(block.getData(), block.getOffset() + dataLength, blockLength - dataLength);
 		}
-		
-		//: fill rest of block with random numbers
-		byte[] dataWithCorrectLength = BeamUtil.createDataBlockWithCorrectLength(data, data.length, blockLength, randomNumberGenerator);
-		result.setData(dataWithCorrectLength);
-		
-		return result;
+		return block;
 	}
 
 
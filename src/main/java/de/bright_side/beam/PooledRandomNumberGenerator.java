@@ -0,0 +1,76 @@
+package de.bright_side.beam;
+
+/**
+ * Pre-generates random bytes of a source generator into a pool per thread and serves the padding from the pool.
+ * Threads never share a pool, so no locking is needed. This helps when the source is expensive per call like a SecureRandom.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class PooledRandomNumberGenerator implements RandomNumberGenerator{
+	public static final int DEFAULT_POOL_LENGTH = 64 * 1024;
+
+	private RandomNumberGenerator source;
+	private int poolLength;
+	private ThreadLocal<Pool> pools = ThreadLocal.withInitial(() -> new Pool(poolLength));
+
+	/**
+	 * static so that the pool of a thread does not reference the generator: otherwise the ThreadLocal could never be collected 
+	 * and each thread would keep the pool of a discarded generator for its whole life
+	 */
+	private static class Pool {
+		private byte[] bytes;
+		/** the bytes from pos to the end have not been used yet*/
+		private int pos;
+
+		public Pool(int poolLength) {
+			bytes = new byte[poolLength];
+			pos = poolLength;
+		}
+	}
+
+	public PooledRandomNumberGenerator(RandomNumberGenerator source) throws Exception {
+		this(source, DEFAULT_POOL_LENGTH);
+	}
+
+	/**
+	 * @param source generator that is used to fill the pools
+	 * @param poolLength number of bytes that are generated at once for each thread
+	 */
+	public PooledRandomNumberGenerator(RandomNumberGenerator source, int poolLength) throws Exception {
+		if (source == null) {
+			throw new Exception("The source random number generator must not be null");
+		}
+		if (poolLength < 1) {
+			throw new Exception("The pool length must be at least 1 but was " + poolLength);
+		}
+		this.source = source;
+		this.poolLength = poolLength;
+	}
+
+	@Override
+	public byte[] getRandomBytes(int length) {
+		byte[] result = new byte[length];
+		fill(result, 0, length);
+		return result;
+	}
+
+	@Override
+	public void fill(byte[] dst, int off, int len) {
+		Pool pool = pools.get();
+		int pos = off;
+		int remainingLength = len;
+		while (remainingLength > 0) {
+			if (pool.pos >= poolLength) {
+				source.fill(pool.bytes, 0, poolLength);
+				pool.pos = 0;
+			}
+			int length = Math.min(remainingLength, poolLength - pool.pos);
+			System.arraycopy(pool.bytes, pool.pos, dst, pos, length);
+			pool.pos += length;
+			pos += length;
+			remainingLength -= length;
+		}
+	}
+
+}
@@ -2,8 +2,6 @@ package de.bright_side.beam;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 /**
  * 
@@ -11,15 +9,66 @@ import java.util.TreeMap;
  *
  */
 class PosSwitchMapCreator {
-	protected SortedMap<Integer, Integer> create(byte[] key, int blockLength) {
-		SortedMap<Integer, Integer> result = new TreeMap<>();
+	/**
+	 * For each position the key byte selects one of the remaining (not yet used) positions by its index. 
+	 * The remaining positions are kept in a Fenwick tree (binary indexed tree) of counts so that selecting and removing the position 
+	 * with a given index takes O(log n) instead of O(n) for removing from a list.
+	 * @return table where the index is the position in the encrypted block and the value is the position in the plain block
+	 */
+	protected int[] create(byte[] key, int blockLength) {
+		int[] result = new int[blockLength];
+		
+		//: tree[i] (1-based) contains the number of remaining positions in the range (i - lowestOneBit(i), i]. Initially all positions remain.
+		int[] tree = new int[blockLength + 1];
+		for (int i = 1; i <= blockLength; i++) {
+			tree[i] = i & -i;
+		}
+		int highestStep = Integer.highestOneBit(blockLength);
+		
+		int keyPos = 0;
+		for (int origPos = 0; origPos < blockLength; origPos ++) {
+			int remainingPositions = blockLength - origPos;
+			int index = (key[keyPos] - Byte.MIN_VALUE) % remainingPositions;
+			
+			//: find the remaining position with the given index: descend the tree while the count up to the next node is still too small
+			int treePos = 0;
+			int remainingIndex = index + 1;
+			for (int step = highestStep; step > 0; step >>= 1) {
+				int nextTreePos = treePos + step;
+				if ((nextTreePos <= blockLength) && (tree[nextTreePos] < remainingIndex)) {
+					treePos = nextTreePos;
+					remainingIndex -= tree[nextTreePos];
+				}
+			}
+			int destPos = treePos;
+			
+			//: remove the position
+			for (int i = destPos + 1; i <= blockLength; i += i & -i) {
+				tree[i] --;
+			}
+			
+			result[origPos] = destPos;
+			keyPos ++;
+			if (keyPos >= key.length) {
+				keyPos = 0;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * straight forward version of create which removes the selected positions from a list and therefore takes O(n^2). 
+	 * It is kept as reference to verify that create produces exactly the same tables.
+	 */
+	protected int[] createWithList(byte[] key, int blockLength) {
+		int[] result = new int[blockLength];
 		
 		List<Integer> remainingDestPositions = createList(0, blockLength);
 		int keyPos = 0;
 		for (int origPos = 0; origPos < blockLength; origPos ++) {
 			int index = (key[keyPos] - Byte.MIN_VALUE) % remainingDestPositions.size();
 			int destPos = remainingDestPositions.remove(index);
-			result.put(origPos, destPos);
+			result[origPos] = destPos;
 			keyPos ++;
 			if (keyPos >= key.length) {
 				keyPos = 0;
@@ -28,6 +77,38 @@ class PosSwitchMapCreator {
 		return result;
 	}
 
+	/**
+	 * @return table where the index is the position in the plain block and the value is the position in the encrypted block
+	 */
+	protected int[] createInverse(int[] posSwitchTable) {
+		int[] result = new int[posSwitchTable.length];
+		for (int i = 0; i < posSwitchTable.length; i++) {
+			result[posSwitchTable[i]] = i;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the smallest position of each cycle of the table. Following table[pos] from a cycle start leads back to the cycle start.
+	 */
+	protected int[] createCycleStarts(int[] posSwitchTable) {
+		boolean[] visited = new boolean[posSwitchTable.length];
+		int[] cycleStarts = new int[posSwitchTable.length];
+		int numberOfCycles = 0;
+		for (int i = 0; i < posSwitchTable.length; i++) {
+			if (!visited[i]) {
+				cycleStarts[numberOfCycles] = i;
+				numberOfCycles ++;
+				for (int pos = i; !visited[pos]; pos = posSwitchTable[pos]) {
+					visited[pos] = true;
+				}
+			}
+		}
+		int[] result = new int[numberOfCycles];
+		System.arraycopy(cycleStarts, 0, result, 0, numberOfCycles);
+		return result;
+	}
+
 	protected List<Integer> createList(int start, int length) {
 		List<Integer> result = new ArrayList<>();
 		int limit = start + length;
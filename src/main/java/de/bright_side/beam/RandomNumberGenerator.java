@@ -7,4 +7,13 @@ package de.bright_side.beam;
  */
 public interface RandomNumberGenerator {
 	byte[] getRandomBytes(int length);
+
+	/**
+	 * writes len random bytes to dst starting at off. The default implementation copies the result of getRandomBytes, 
+	 * implementations should override it to avoid the allocation
+	 */
+	default void fill(byte[] dst, int off, int len) {
+		byte[] randomBytes = getRandomBytes(len);
+		System.arraycopy(randomBytes, 0, dst, off, len);
+	}
 }
@@ -0,0 +1,113 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads from an input stream into one large reusable array so that blocks and headers can be parsed in place instead of being
+ * read with small separate read calls. Each read call takes as many bytes as the input stream provides at once, but only waits
+ * for more data if the bytes that are needed are not available yet.
+ * The array starts with a few units and grows up to the read-ahead length only while the input stream fills it completely,
+ * so short data and slow streams do not allocate the whole read-ahead length.
+ *
+ * @author Philip Heyse
+ *
+ */
+class ReadAheadBuffer {
+	protected static final int DEFAULT_READ_AHEAD_LENGTH = 1024 * 1024;
+	/** number of units that fit in the buffer before it grows*/
+	private static final int INITIAL_NUMBER_OF_UNITS = 4;
+	private static final int END_OF_STREAM = -1;
+
+	private InputStream input;
+	private byte[] buffer;
+	/** length up to which the buffer may grow*/
+	private int maximumLength;
+	/** position of the first byte in the buffer that has not been consumed yet*/
+	private int position = 0;
+	/** position after the last byte in the buffer that has been read from the input stream*/
+	private int limit = 0;
+	private boolean endOfStreamReached = false;
+
+	/**
+	 * @param unitLength the maximum length that is requested with ensureAvailable. The buffer length is a multiple of it
+	 * @param readAheadLength the maximum length of the buffer. It is rounded down to a multiple of unitLength, but is at least unitLength
+	 */
+	protected ReadAheadBuffer(InputStream input, int unitLength, int readAheadLength) {
+		this.input = input;
+		maximumLength = Math.max(1, readAheadLength / unitLength) * unitLength;
+		buffer = new byte[(int)Math.min((long)INITIAL_NUMBER_OF_UNITS * unitLength, maximumLength)];
+	}
+
+	/**
+	 * reads from the input stream until at least length bytes are available starting at getPosition() or until the end of the stream is reached
+	 * @return true if length bytes are available
+	 */
+	public boolean ensureAvailable(int length) throws IOException {
+		if (getAvailable() >= length) {
+			return true;
+		}
+		if (position + length > buffer.length) {
+			byte[] target = buffer;
+			if ((limit == buffer.length) && (buffer.length < maximumLength)) {
+				//: the input stream provided enough data to fill the whole buffer, so a larger buffer saves read calls
+				target = new byte[(int)Math.min(2L * buffer.length, maximumLength)];
+			}
+			//: move the remaining bytes to the start so that length bytes fit in one piece
+			System.arraycopy(buffer, position, target, 0, limit - position);
+			buffer = target;
+			limit -= position;
+			position = 0;
+		}
+		while ((getAvailable() < length) && (!endOfStreamReached)) {
+			int readLength = input.read(buffer, limit, buffer.length - limit);
+			if (readLength == END_OF_STREAM) {
+				endOfStreamReached = true;
+			} else {
+				limit += readLength;
+			}
+		}
+		return getAvailable() >= length;
+	}
+
+	/**
+	 * skips the given number of bytes. Bytes that are not in the buffer are skipped in the input stream
+	 * @return number of bytes that have been skipped which is less than length only if the end of the stream has been reached
+	 */
+	public long skip(long length) throws IOException {
+		long result = Math.min(length, getAvailable());
+		position += result;
+		while ((result < length) && (!endOfStreamReached)) {
+			long skipped = input.skip(length - result);
+			if (skipped > 0) {
+				result += skipped;
+			} else if (input.read() == END_OF_STREAM) {
+				//: skip did not work, so check if the end of the stream has been reached by reading one byte
+				endOfStreamReached = true;
+			} else {
+				result ++;
+			}
+		}
+		return result;
+	}
+
+	public void consume(int length) {
+		position += length;
+	}
+
+	public int getAvailable() {
+		return limit - position;
+	}
+
+	/**
+	 * @return the current buffer. A new array may be returned after ensureAvailable if the buffer has grown
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+}
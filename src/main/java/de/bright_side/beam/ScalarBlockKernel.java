@@ -0,0 +1,25 @@
+package de.bright_side.beam;
+
+/**
+ * Processes one byte per loop iteration. Used if no faster kernel is available and as reference for the self-check of the other kernels.
+ *
+ * @author Philip Heyse
+ *
+ */
+class ScalarBlockKernel implements BlockKernel {
+
+	@Override
+	public void gatherAdd(byte[] source, int sourceOffset, int[] table, byte[] key, byte[] destination, int destinationOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			destination[destinationOffset + i] = (byte)(source[sourceOffset + table[i]] + key[i]);
+		}
+	}
+
+	@Override
+	public void gatherSubtract(byte[] source, int sourceOffset, int[] table, byte[] key, byte[] destination, int destinationOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			destination[destinationOffset + i] = (byte)(source[sourceOffset + table[i]] - key[i]);
+		}
+	}
+
+}
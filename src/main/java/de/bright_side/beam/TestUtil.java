@@ -2,8 +2,6 @@ package de.bright_side.beam;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 /**
  * 
@@ -69,12 +67,8 @@ class TestUtil {
 		return toString(toIntList(items));
 	}
 
-	public static SortedMap<Integer, Integer> intMap(int ...data) {
-		SortedMap<Integer, Integer> result = new TreeMap<Integer, Integer>();
-		for (int i = 0; i < data.length; i += 2) {
-			result.put(data[i], data[i + 1]);
-		}
-		return result;
+	public static int[] intArray(int ...data) {
+		return data;
 	}
 
 }
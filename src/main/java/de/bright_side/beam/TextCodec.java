@@ -0,0 +1,114 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+
+/**
+ * Converts bytes to text and back in groups: each group of getBytesPerGroup() bytes becomes getCharsPerGroup() characters.
+ * A last group with r bytes that does not fill a whole group becomes r + 1 characters.
+ *
+ * @author Philip Heyse
+ *
+ */
+abstract class TextCodec {
+
+	public abstract int getBytesPerGroup();
+
+	public abstract int getCharsPerGroup();
+
+	/**
+	 * encodes the length bytes in data starting at offset (at most getBytesPerGroup()) and writes getEncodedLength(length) characters to output
+	 */
+	protected abstract void encodeGroup(byte[] data, int offset, int length, char[] output, int outputOffset);
+
+	/**
+	 * decodes the length characters in chars starting at offset (at most getCharsPerGroup()) and writes getDecodedLength(length) bytes to output
+	 * @throws IOException if a character is not valid
+	 */
+	protected abstract void decodeGroup(char[] chars, int offset, int length, byte[] output, int outputOffset) throws IOException;
+
+	public int getEncodedLength(int byteCount) {
+		int rest = byteCount % getBytesPerGroup();
+		return (byteCount / getBytesPerGroup()) * getCharsPerGroup() + (rest == 0 ? 0 : rest + 1);
+	}
+
+	/**
+	 * @throws IOException if no data can have the given number of characters
+	 */
+	public int getDecodedLength(int charCount) throws IOException {
+		int rest = charCount % getCharsPerGroup();
+		if (rest == 1) {
+			throw new IOException("Encoded text has an invalid length: " + charCount);
+		}
+		return (charCount / getCharsPerGroup()) * getBytesPerGroup() + (rest == 0 ? 0 : rest - 1);
+	}
+
+	/**
+	 * @return the number of characters written to output
+	 */
+	public int encode(byte[] data, int offset, int length, char[] output, int outputOffset) {
+		int bytesPerGroup = getBytesPerGroup();
+		int charsPerGroup = getCharsPerGroup();
+		int end = offset + length;
+		int outputPos = outputOffset;
+		for (int pos = offset; pos < end; pos += bytesPerGroup) {
+			int groupLength = Math.min(bytesPerGroup, end - pos);
+			encodeGroup(data, pos, groupLength, output, outputPos);
+			outputPos += groupLength == bytesPerGroup ? charsPerGroup : groupLength + 1;
+		}
+		return outputPos - outputOffset;
+	}
+
+	/**
+	 * @return the number of bytes written to output
+	 * @throws IOException if the characters are no valid encoded text
+	 */
+	public int decode(char[] chars, int offset, int length, byte[] output, int outputOffset) throws IOException {
+		int result = getDecodedLength(length);
+		int bytesPerGroup = getBytesPerGroup();
+		int charsPerGroup = getCharsPerGroup();
+		int end = offset + length;
+		int outputPos = outputOffset;
+		for (int pos = offset; pos < end; pos += charsPerGroup) {
+			int groupLength = Math.min(charsPerGroup, end - pos);
+			decodeGroup(chars, pos, groupLength, output, outputPos);
+			outputPos += groupLength == charsPerGroup ? bytesPerGroup : groupLength - 1;
+		}
+		return result;
+	}
+
+	public String encodeToString(byte[] data) {
+		char[] result = new char[getEncodedLength(data.length)];
+		encode(data, 0, data.length, result, 0);
+		return new String(result);
+	}
+
+	public byte[] decode(String text) throws IOException {
+		char[] chars = text.toCharArray();
+		byte[] result = new byte[getDecodedLength(chars.length)];
+		decode(chars, 0, chars.length, result, 0);
+		return result;
+	}
+
+	/**
+	 * @return table where the index is the character and the value is the index of the character in alphabet or -1
+	 */
+	protected static int[] createDecodeTable(char[] alphabet) {
+		int[] result = new int[128];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = -1;
+		}
+		for (int i = 0; i < alphabet.length; i++) {
+			result[alphabet[i]] = i;
+		}
+		return result;
+	}
+
+	protected static int decodeChar(int[] decodeTable, char character) throws IOException {
+		int result = character < decodeTable.length ? decodeTable[character] : -1;
+		if (result == -1) {
+			throw new IOException("Encoded text contains illegal character: '" + character + "'");
+		}
+		return result;
+	}
+
+}
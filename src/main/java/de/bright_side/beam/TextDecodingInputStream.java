@@ -0,0 +1,96 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Reads text of the given codec from a reader and provides the bytes it represents. Only small reusable buffers are used.
+ *
+ * @author Philip Heyse
+ *
+ */
+class TextDecodingInputStream extends InputStream {
+	private static final int END_OF_STREAM = -1;
+	private static final int MAXIMUM_GROUPS_PER_READ = 1024;
+
+	private Reader input;
+	private TextCodec codec;
+	private int charsPerGroup;
+	private char[] chars;
+	/** number of characters at the start of chars that have been read but not decoded yet because the group is not complete*/
+	private int charCount = 0;
+	private boolean endOfStreamReached = false;
+
+	/** decoded bytes that have not been read yet. The array always stays the same and the bytes get overwritten*/
+	private byte[] decodedBytes;
+	private int decodedPos = 0;
+	private int decodedLength = 0;
+
+	protected TextDecodingInputStream(Reader input, TextCodec codec) {
+		this.input = input;
+		this.codec = codec;
+		charsPerGroup = codec.getCharsPerGroup();
+		chars = new char[MAXIMUM_GROUPS_PER_READ * charsPerGroup];
+		decodedBytes = new byte[MAXIMUM_GROUPS_PER_READ * codec.getBytesPerGroup()];
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fillDecodedBytes()) {
+			return END_OF_STREAM;
+		}
+		int result = decodedBytes[decodedPos] & 0xFF;
+		decodedPos ++;
+		return result;
+	}
+
+	@Override
+	public int read(byte[] output, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fillDecodedBytes()) {
+			return END_OF_STREAM;
+		}
+		int result = Math.min(len, decodedLength - decodedPos);
+		System.arraycopy(decodedBytes, decodedPos, output, off, result);
+		decodedPos += result;
+		return result;
+	}
+
+	/**
+	 * reads and decodes characters until there are decoded bytes that have not been read yet
+	 * @return false if the end of the stream is reached
+	 */
+	private boolean fillDecodedBytes() throws IOException {
+		while (decodedPos >= decodedLength) {
+			if (endOfStreamReached) {
+				return false;
+			}
+			decodedPos = 0;
+			decodedLength = 0;
+			int readLength = input.read(chars, charCount, chars.length - charCount);
+			if (readLength == END_OF_STREAM) {
+				//: the last group may have less characters
+				endOfStreamReached = true;
+				decodedLength = codec.decode(chars, 0, charCount, decodedBytes, 0);
+				charCount = 0;
+			} else {
+				charCount += readLength;
+				int completeLength = charCount / charsPerGroup * charsPerGroup;
+				decodedLength = codec.decode(chars, 0, completeLength, decodedBytes, 0);
+				//: keep the characters of a group that is not complete yet
+				System.arraycopy(chars, completeLength, chars, 0, charCount - completeLength);
+				charCount -= completeLength;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+}
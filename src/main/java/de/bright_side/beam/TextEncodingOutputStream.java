@@ -0,0 +1,87 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Writes all bytes as text of the given codec to a writer. Only a small reusable character buffer is used.
+ * Bytes that do not fill a whole group are kept until more bytes are written or the stream is closed.
+ *
+ * @author Philip Heyse
+ *
+ */
+class TextEncodingOutputStream extends OutputStream {
+	private static final int MAXIMUM_GROUPS_PER_WRITE = 1024;
+
+	private Writer output;
+	private TextCodec codec;
+	private int bytesPerGroup;
+	private char[] chars;
+	/** bytes of a group that is not complete yet*/
+	private byte[] pendingBytes;
+	private int pendingLength = 0;
+	private byte[] singleByte = new byte[1];
+
+	protected TextEncodingOutputStream(Writer output, TextCodec codec) {
+		this.output = output;
+		this.codec = codec;
+		bytesPerGroup = codec.getBytesPerGroup();
+		chars = new char[MAXIMUM_GROUPS_PER_WRITE * codec.getCharsPerGroup()];
+		pendingBytes = new byte[bytesPerGroup];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		singleByte[0] = (byte)b;
+		write(singleByte, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] data, int off, int len) throws IOException {
+		int pos = off;
+		int end = off + len;
+
+		//: complete the pending group first
+		if (pendingLength > 0) {
+			int length = Math.min(bytesPerGroup - pendingLength, end - pos);
+			System.arraycopy(data, pos, pendingBytes, pendingLength, length);
+			pendingLength += length;
+			pos += length;
+			if (pendingLength < bytesPerGroup) {
+				return;
+			}
+			output.write(chars, 0, codec.encode(pendingBytes, 0, bytesPerGroup, chars, 0));
+			pendingLength = 0;
+		}
+
+		//: encode whole groups directly from data
+		int maximumBytesPerWrite = MAXIMUM_GROUPS_PER_WRITE * bytesPerGroup;
+		while (end - pos >= bytesPerGroup) {
+			int length = Math.min(maximumBytesPerWrite, (end - pos) / bytesPerGroup * bytesPerGroup);
+			output.write(chars, 0, codec.encode(data, pos, length, chars, 0));
+			pos += length;
+		}
+
+		pendingLength = end - pos;
+		System.arraycopy(data, pos, pendingBytes, 0, pendingLength);
+	}
+
+	/**
+	 * flushes the writer. Bytes that do not fill a whole group are kept as more bytes could follow
+	 */
+	@Override
+	public void flush() throws IOException {
+		output.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (pendingLength > 0) {
+			output.write(chars, 0, codec.encode(pendingBytes, 0, pendingLength, chars, 0));
+			pendingLength = 0;
+		}
+		output.close();
+	}
+
+}
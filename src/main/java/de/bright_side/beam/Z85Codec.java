@@ -0,0 +1,62 @@
+package de.bright_side.beam;
+
+import java.io.IOException;
+
+/**
+ * Z85 (ZeroMQ Base85) which creates 5 characters for 4 bytes. The characters need no escaping in JSON and XML attributes.
+ * As the encrypted data does not always have a multiple of 4 bytes, a last group with r bytes is written as r + 1 characters like in Ascii85:
+ * the group is filled with 0 bytes for encoding and with the highest character for decoding.
+ *
+ * @author Philip Heyse
+ *
+ */
+class Z85Codec extends TextCodec {
+	private static final char[] ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ.-:+=^!/*?&<>()[]{}@%$#".toCharArray();
+	private static final int[] DECODE_TABLE = createDecodeTable(ALPHABET);
+	private static final int BASE = 85;
+	private static final long MAXIMUM_GROUP_VALUE = 0xFFFFFFFFL;
+
+	@Override
+	public int getBytesPerGroup() {
+		return 4;
+	}
+
+	@Override
+	public int getCharsPerGroup() {
+		return 5;
+	}
+
+	@Override
+	protected void encodeGroup(byte[] data, int offset, int length, char[] output, int outputOffset) {
+		long value = 0;
+		for (int i = 0; i < 4; i++) {
+			value <<= 8;
+			if (i < length) {
+				value |= data[offset + i] & 0xFF;
+			}
+		}
+		int charCount = length == 4 ? 5 : length + 1;
+		long divisor = BASE * BASE * BASE * BASE;
+		for (int i = 0; i < charCount; i++) {
+			output[outputOffset + i] = ALPHABET[(int)((value / divisor) % BASE)];
+			divisor /= BASE;
+		}
+	}
+
+	@Override
+	protected void decodeGroup(char[] chars, int offset, int length, byte[] output, int outputOffset) throws IOException {
+		long value = 0;
+		for (int i = 0; i < 5; i++) {
+			value *= BASE;
+			value += i < length ? decodeChar(DECODE_TABLE, chars[offset + i]) : BASE - 1;
+		}
+		if (value > MAXIMUM_GROUP_VALUE) {
+			throw new IOException("Encoded text contains an invalid group at position " + offset);
+		}
+		int byteCount = length == 5 ? 4 : length - 1;
+		for (int i = 0; i < byteCount; i++) {
+			output[outputOffset + i] = (byte)(value >> (24 - 8 * i));
+		}
+	}
+
+}
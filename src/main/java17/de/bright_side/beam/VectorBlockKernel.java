@@ -0,0 +1,43 @@
+package de.bright_side.beam;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Processes as many bytes per loop iteration as the preferred vector of the CPU holds: the source bytes are gathered by the table 
+ * and the key bytes are added or subtracted lane-wise. The remaining bytes are processed one by one.
+ * Only contained in the multi-release jar for Java 17+ and only used if it is selected with the system property BlockKernels.KERNEL_PROPERTY.
+ *
+ * @author Philip Heyse
+ *
+ */
+class VectorBlockKernel implements BlockKernel {
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+	@Override
+	public void gatherAdd(byte[] source, int sourceOffset, int[] table, byte[] key, byte[] destination, int destinationOffset, int length) {
+		int i = 0;
+		int upperBound = SPECIES.loopBound(length);
+		for (; i < upperBound; i += SPECIES.length()) {
+			ByteVector data = ByteVector.fromArray(SPECIES, source, sourceOffset, table, i);
+			data.add(ByteVector.fromArray(SPECIES, key, i)).intoArray(destination, destinationOffset + i);
+		}
+		for (; i < length; i++) {
+			destination[destinationOffset + i] = (byte)(source[sourceOffset + table[i]] + key[i]);
+		}
+	}
+
+	@Override
+	public void gatherSubtract(byte[] source, int sourceOffset, int[] table, byte[] key, byte[] destination, int destinationOffset, int length) {
+		int i = 0;
+		int upperBound = SPECIES.loopBound(length);
+		for (; i < upperBound; i += SPECIES.length()) {
+			ByteVector data = ByteVector.fromArray(SPECIES, source, sourceOffset, table, i);
+			data.sub(ByteVector.fromArray(SPECIES, key, i)).intoArray(destination, destinationOffset + i);
+		}
+		for (; i < length; i++) {
+			destination[destinationOffset + i] = (byte)(source[sourceOffset + table[i]] - key[i]);
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class BeamConcurrencyTest {
+	private static final String PASSWORD = "a shared password";
+	private static final int BLOCK_LENGTH = 1000;
+	private static final int NUMBER_OF_THREADS = 32;
+	private static final int NUMBER_OF_INSTANCES = 20;
+	private static final int OPERATIONS_PER_THREAD = 20;
+
+	@Test
+	public void encryptAndDecrypt_sharedFreshInstances() throws Exception {
+		Beam referenceBeam = new Beam(PASSWORD, BLOCK_LENGTH);
+		ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+		try {
+			for (int instance = 0; instance < NUMBER_OF_INSTANCES; instance++) {
+				//: each instance is used by all threads before it has been initialized
+				Beam sharedBeam = new Beam(PASSWORD, BLOCK_LENGTH);
+				CountDownLatch start = new CountDownLatch(1);
+				List<Future<Integer>> futures = new ArrayList<>();
+				for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+					int seed = instance * NUMBER_OF_THREADS + thread;
+					futures.add(executor.submit(() -> {
+						start.await();
+						return useBeam(sharedBeam, referenceBeam, seed);
+					}));
+				}
+				start.countDown();
+				for (Future<Integer> future: futures) {
+					assertEquals(OPERATIONS_PER_THREAD, future.get().intValue());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return number of successful operations
+	 */
+	private int useBeam(Beam sharedBeam, Beam referenceBeam, int seed) throws Exception {
+		int result = 0;
+		for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+			byte[] plainBytes = createBytes((seed * 31 + i * 97) % 5000, (seed + i) * 13);
+			byte[] decrypted;
+			switch (i % 3) {
+			case 0:
+				decrypted = referenceBeam.decrypt(sharedBeam.encrypt(plainBytes));
+				break;
+			case 1:
+				ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+				sharedBeam.encrypt(new ByteArrayInputStream(plainBytes), encrypted, null);
+				ByteArrayOutputStream decryptedStream = new ByteArrayOutputStream();
+				sharedBeam.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decryptedStream, null);
+				decrypted = decryptedStream.toByteArray();
+				break;
+			default:
+				ByteBuffer encryptedBuffer = ByteBuffer.allocateDirect((int)sharedBeam.getEncryptedLength(plainBytes.length));
+				sharedBeam.encrypt(ByteBuffer.wrap(plainBytes), encryptedBuffer);
+				encryptedBuffer.flip();
+				ByteBuffer decryptedBuffer = ByteBuffer.allocate(plainBytes.length);
+				sharedBeam.decrypt(encryptedBuffer, decryptedBuffer);
+				decrypted = decryptedBuffer.array();
+				break;
+			}
+			assertArrayEquals(plainBytes, decrypted);
+			result++;
+		}
+		return result;
+	}
+
+	private byte[] createBytes(int length, int seed) {
+		byte[] result = new byte[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = (byte)(seed + i * 7);
+		}
+		return result;
+	}
+}
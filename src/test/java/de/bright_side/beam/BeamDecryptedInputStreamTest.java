@@ -0,0 +1,88 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+public class BeamDecryptedInputStreamTest {
+	private static final String PASSWORD = "thePassword";
+	private static final int BLOCK_LENGTH = 32;
+	private static final int END_OF_STREAM = -1;
+
+	@Test
+	public void read_singleBytesAreUnsigned() throws Exception {
+		byte[] plainBytes = TestUtil.byteArray(-1, -128, 0, 127, -2);
+		BeamDecryptedInputStream stream = createStream(plainBytes);
+
+		assertEquals(255, stream.read());
+		assertEquals(128, stream.read());
+		assertEquals(0, stream.read());
+		assertEquals(127, stream.read());
+		assertEquals(254, stream.read());
+		assertEquals(END_OF_STREAM, stream.read());
+	}
+
+	@Test
+	public void read_withOffset() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		BeamDecryptedInputStream stream = createStream(plainBytes);
+		byte[] output = new byte[110];
+
+		assertEquals(100, stream.read(output, 10, 100));
+		assertEquals(END_OF_STREAM, stream.read(output, 0, 10));
+
+		byte[] expected = new byte[110];
+		System.arraycopy(plainBytes, 0, expected, 10, 100);
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(output));
+	}
+
+	@Test
+	public void read_mixedCallsAcrossBlocks() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		BeamDecryptedInputStream stream = createStream(plainBytes);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[7];
+
+		output.write(stream.read());
+		assertEquals(7, stream.read(buffer, 0, 7));
+		output.write(buffer);
+		assertEquals(30, stream.skip(30));
+		output.write(stream.readNBytes(50));
+		output.write(stream.readAllBytes());
+
+		byte[] expected = new byte[70];
+		System.arraycopy(plainBytes, 0, expected, 0, 8);
+		System.arraycopy(plainBytes, 38, expected, 8, 62);
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(output.toByteArray()));
+		assertEquals(0, stream.readNBytes(buffer, 0, 7));
+		assertEquals(0, stream.skip(10));
+	}
+
+	@Test
+	public void readAllBytes_emptyStream() throws Exception {
+		BeamDecryptedInputStream stream = createStream(new byte[0]);
+
+		assertEquals(0, stream.readAllBytes().length);
+		assertEquals(END_OF_STREAM, stream.read());
+	}
+
+	@Test
+	public void transferTo_normal() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 999);
+		BeamDecryptedInputStream stream = createStream(plainBytes);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		assertEquals(1000, stream.transferTo(output));
+
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(output.toByteArray()));
+	}
+
+	private BeamDecryptedInputStream createStream(byte[] plainBytes) throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = beam.encrypt(plainBytes);
+		return new BeamDecryptedInputStream(beam, new ByteArrayInputStream(encryptedBytes), null);
+	}
+}
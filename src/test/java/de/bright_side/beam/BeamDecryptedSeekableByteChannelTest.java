@@ -0,0 +1,170 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BeamDecryptedSeekableByteChannelTest {
+	private static final String PASSWORD = "thePassword";
+	private static final int BLOCK_LENGTH = 32;
+	private static final int END_OF_STREAM = -1;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void read_all() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 1000);
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		Path encrypted = writeFile("encrypted", beam.encrypt(plainBytes));
+
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encrypted)) {
+			assertEquals(plainBytes.length, channel.size());
+			assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(readAll(channel, 7)));
+			assertEquals(END_OF_STREAM, channel.read(ByteBuffer.allocate(10)));
+		}
+	}
+
+	@Test
+	public void read_atPositions() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 1000);
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		Path encrypted = writeFile("encrypted", beam.encrypt(plainBytes));
+
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encrypted)) {
+			assertRange(plainBytes, channel, 995, 6);
+			assertRange(plainBytes, channel, 0, 1);
+			assertRange(plainBytes, channel, 31, 2);
+			assertRange(plainBytes, channel, 500, 100);
+			assertRange(plainBytes, channel, 990, 11);
+		}
+	}
+
+	@Test
+	public void read_emptyData() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		Path encrypted = writeFile("encrypted", new byte[0]);
+
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encrypted)) {
+			assertEquals(0, channel.size());
+			assertEquals(END_OF_STREAM, channel.read(ByteBuffer.allocate(10)));
+		}
+	}
+
+	@Test
+	public void read_concatenatedDataSizeFirst() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] part1 = TestUtil.byteArrayFromRange(0, 40);
+		byte[] part2 = TestUtil.byteArrayFromRange(100, 600);
+		Path encrypted = writeFile("encrypted", concat(beam.encrypt(part1), beam.encrypt(part2)));
+		byte[] expected = concat(part1, part2);
+
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encrypted)) {
+			assertEquals(expected.length, channel.size());
+			assertRange(expected, channel, 45, 100);
+			channel.position(0);
+			assertEquals(TestUtil.toString(expected), TestUtil.toString(readAll(channel, 100)));
+		}
+	}
+
+	@Test
+	public void read_concatenatedDataFoundWhenReading() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		//: block 5 is not full and is not one of the sampled blocks
+		byte[] part1 = TestUtil.byteArrayFromRange(0, 5 * BLOCK_LENGTH + 9);
+		byte[] part2 = TestUtil.byteArrayFromRange(0, 200 * BLOCK_LENGTH);
+		Path encrypted = writeFile("encrypted", concat(beam.encrypt(part1), beam.encrypt(part2)));
+		byte[] expected = concat(part1, part2);
+
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encrypted)) {
+			assertEquals(TestUtil.toString(expected), TestUtil.toString(readAll(channel, 50)));
+			assertEquals(expected.length, channel.size());
+			assertRange(expected, channel, 3000, 500);
+		}
+	}
+
+	@Test
+	public void read_positionBeforeReadingWithFlushedPartialBlock() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		beam.setFlushPolicy(BeamFlushPolicy.EMIT_PARTIAL_BLOCK);
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 999);
+		ByteArrayOutputStream encryptedOutput = new ByteArrayOutputStream();
+		OutputStream stream = beam.getEncryptedOutputStream(encryptedOutput, null);
+		//: block 3 only contains 4 bytes
+		stream.write(plainBytes, 0, 100);
+		stream.flush();
+		stream.write(plainBytes, 100, 900);
+		stream.close();
+		Path encrypted = writeFile("encrypted", encryptedOutput.toByteArray());
+
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encrypted)) {
+			assertRange(plainBytes, channel, 500, 20);
+			assertEquals(plainBytes.length, channel.size());
+		}
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encrypted)) {
+			assertEquals(plainBytes.length, channel.size());
+			assertRange(plainBytes, channel, 990, 10);
+			assertEquals(END_OF_STREAM, channel.read(ByteBuffer.allocate(10)));
+		}
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encrypted)) {
+			channel.position(1005);
+			assertEquals(END_OF_STREAM, channel.read(ByteBuffer.allocate(10)));
+			channel.position(0);
+			assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(readAll(channel, 64)));
+		}
+	}
+
+	@Test(expected = Exception.class)
+	public void create_corruptLength() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, 100));
+		byte[] corrupt = new byte[encryptedBytes.length - 1];
+		System.arraycopy(encryptedBytes, 0, corrupt, 0, corrupt.length);
+
+		beam.getDecryptedChannel(writeFile("encrypted", corrupt));
+	}
+
+	private void assertRange(byte[] expected, SeekableByteChannel channel, int position, int length) throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		channel.position(position);
+		while ((buffer.hasRemaining()) && (channel.read(buffer) != END_OF_STREAM)) {
+			//: read until buffer is full
+		}
+		byte[] expectedRange = new byte[length];
+		System.arraycopy(expected, position, expectedRange, 0, length);
+		assertEquals(TestUtil.toString(expectedRange), TestUtil.toString(buffer.array()));
+		assertEquals(position + length, channel.position());
+	}
+
+	private byte[] readAll(SeekableByteChannel channel, int bufferSize) throws Exception {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+		while (channel.read(buffer) != END_OF_STREAM) {
+			result.write(buffer.array(), 0, buffer.position());
+			buffer.clear();
+		}
+		return result.toByteArray();
+	}
+
+	private byte[] concat(byte[] data1, byte[] data2) {
+		byte[] result = new byte[data1.length + data2.length];
+		System.arraycopy(data1, 0, result, 0, data1.length);
+		System.arraycopy(data2, 0, result, data1.length, data2.length);
+		return result;
+	}
+
+	private Path writeFile(String name, byte[] data) throws Exception {
+		Path result = folder.getRoot().toPath().resolve(name);
+		Files.write(result, data);
+		return result;
+	}
+}
@@ -0,0 +1,150 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BeamEncryptedOutputStreamTest {
+	private static final String PASSWORD = "thePassword";
+	private static final int BLOCK_LENGTH = 32;
+	private static final int ENCRYPTED_BLOCK_LENGTH = BLOCK_LENGTH + 2;
+	private static final byte[] FAKE_RANDOM_NUMBERS = TestUtil.byteArray(1, 2, 3, 4, 5);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static class FlushCountingOutputStream extends ByteArrayOutputStream {
+		private int flushCount = 0;
+
+		@Override
+		public void flush() throws IOException {
+			flushCount ++;
+		}
+	}
+
+	@Test
+	public void write_singleBytesSameAsEncrypt() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		Beam beam = createBeam();
+		byte[] expected = beam.encrypt(plainBytes);
+		beam = createBeam();
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+
+		BeamEncryptedOutputStream stream = new BeamEncryptedOutputStream(beam, encrypted, null);
+		for (byte plainByte: plainBytes) {
+			stream.write(plainByte);
+		}
+		stream.close();
+
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(encrypted.toByteArray()));
+	}
+
+	@Test
+	public void write_withOffsetSameAsEncrypt() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		byte[] input = new byte[120];
+		System.arraycopy(plainBytes, 0, input, 10, plainBytes.length);
+		Beam beam = createBeam();
+		byte[] expected = beam.encrypt(plainBytes);
+		beam = createBeam();
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+
+		BeamEncryptedOutputStream stream = new BeamEncryptedOutputStream(beam, encrypted, null);
+		stream.write(input, 10, 5);
+		stream.write(input, 15, 80);
+		stream.write(input, 95, 15);
+		stream.close();
+
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(encrypted.toByteArray()));
+	}
+
+	@Test
+	public void flush_keepBuffering() throws Exception {
+		FlushCountingOutputStream encrypted = new FlushCountingOutputStream();
+		BeamEncryptedOutputStream stream = new BeamEncryptedOutputStream(createBeam(), encrypted, null);
+
+		stream.write(TestUtil.byteArrayFromRange(0, 39));
+		stream.flush();
+
+		assertEquals(ENCRYPTED_BLOCK_LENGTH, encrypted.size());
+		assertEquals(1, encrypted.flushCount);
+	}
+
+	@Test
+	public void flush_emitPartialBlock() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 49);
+		Beam beam = createBeam();
+		beam.setFlushPolicy(BeamFlushPolicy.EMIT_PARTIAL_BLOCK);
+		FlushCountingOutputStream encrypted = new FlushCountingOutputStream();
+		BeamEncryptedOutputStream stream = new BeamEncryptedOutputStream(beam, encrypted, null);
+
+		stream.write(plainBytes, 0, 40);
+		stream.flush();
+		assertEquals(2 * ENCRYPTED_BLOCK_LENGTH, encrypted.size());
+		assertEquals(1, encrypted.flushCount);
+		byte[] expectedSoFar = new byte[40];
+		System.arraycopy(plainBytes, 0, expectedSoFar, 0, 40);
+		assertEquals(TestUtil.toString(expectedSoFar), TestUtil.toString(beam.decrypt(encrypted.toByteArray())));
+
+		stream.flush();
+		assertEquals(2 * ENCRYPTED_BLOCK_LENGTH, encrypted.size());
+
+		stream.write(plainBytes, 40, 10);
+		stream.close();
+		assertEquals(3 * ENCRYPTED_BLOCK_LENGTH, encrypted.size());
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(beam.decrypt(encrypted.toByteArray())));
+	}
+
+	@Test
+	public void flush_emitPartialBlockReadAsFile() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 999);
+		Beam beam = createBeam();
+		beam.setFlushPolicy(BeamFlushPolicy.EMIT_PARTIAL_BLOCK);
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+		BeamEncryptedOutputStream stream = new BeamEncryptedOutputStream(beam, encrypted, null);
+		//: each flush writes a block that is not full in the middle of the data
+		stream.write(plainBytes, 0, 100);
+		stream.flush();
+		stream.write(plainBytes, 100, 350);
+		stream.flush();
+		stream.write(plainBytes, 450, 550);
+		stream.close();
+		Path encryptedFile = folder.getRoot().toPath().resolve("encrypted");
+		Files.write(encryptedFile, encrypted.toByteArray());
+
+		assertEquals(plainBytes.length, beam.getDecryptedLength(encryptedFile));
+
+		try (SeekableByteChannel channel = beam.getDecryptedChannel(encryptedFile)) {
+			channel.position(700);
+			ByteBuffer buffer = ByteBuffer.allocate(10);
+			assertEquals(10, channel.read(buffer));
+			assertEquals(TestUtil.toString(Arrays.copyOfRange(plainBytes, 700, 710)), TestUtil.toString(buffer.array()));
+			assertEquals(plainBytes.length, channel.size());
+		}
+
+		Path decryptedFile = folder.getRoot().toPath().resolve("decrypted");
+		beam.decryptFile(encryptedFile, decryptedFile);
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(Files.readAllBytes(decryptedFile)));
+	}
+
+	@Test(expected = Exception.class)
+	public void setFlushPolicy_null() throws Exception {
+		createBeam().setFlushPolicy(null);
+	}
+
+	private Beam createBeam() throws Exception {
+		Beam result = new Beam(PASSWORD, BLOCK_LENGTH);
+		result.setRandomNumberGenerator(new FakeRandomNumberGenerator(FAKE_RANDOM_NUMBERS));
+		return result;
+	}
+}
@@ -2,11 +2,20 @@ package de.bright_side.beam;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -281,6 +290,161 @@ public class BeamTest{
 		assertEquals(0, encryptedBytes.length);
 	}
 
+	@Test
+	public void encryptStream_blocksWrittenInOneCall() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 2999);
+		int blockLength = 32;
+		Beam beam = new Beam("thePassword", blockLength);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		byte[] expected = beam.encrypt(plainBytes);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		List<Integer> writeLengths = new ArrayList<>();
+		ByteArrayOutputStream encryptionOutputStream = new ByteArrayOutputStream() {
+			@Override
+			public synchronized void write(byte[] b, int off, int len) {
+				writeLengths.add(len);
+				super.write(b, off, len);
+			}
+		};
+
+		beam.encrypt(new ByteArrayInputStream(plainBytes), encryptionOutputStream, null);
+
+		//: the first read returns less than requested, so the full blocks are written right away and the last block at the end of the stream
+		assertEquals(2, writeLengths.size());
+		assertEquals(93 * (blockLength + 2), writeLengths.get(0).intValue());
+		assertEquals(blockLength + 2, writeLengths.get(1).intValue());
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(encryptionOutputStream.toByteArray()));
+	}
+
+	@Test
+	public void encryptStream_fullBlocksWrittenBeforeSlowStreamEnds() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 199);
+		int blockLength = 32;
+		Beam beam = new Beam("thePassword", blockLength);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		byte[] expected = beam.encrypt(plainBytes);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		ByteArrayOutputStream encryptionOutputStream = new ByteArrayOutputStream();
+		List<Integer> writtenLengthBeforeRead = new ArrayList<>();
+		//: returns at most 50 bytes per read like a slow stream
+		InputStream slowInputStream = new ByteArrayInputStream(plainBytes) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				writtenLengthBeforeRead.add(encryptionOutputStream.size());
+				return super.read(b, off, Math.min(len, 50));
+			}
+		};
+
+		beam.encrypt(slowInputStream, encryptionOutputStream, null);
+
+		//: reads end at 50, 100, 150, 200 bytes (1, 3, 4 and 6 full blocks) and the end of the stream is reached with the 7th block
+		assertEquals("[0, 34, 102, 136, 204]", writtenLengthBeforeRead.toString());
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(encryptionOutputStream.toByteArray()));
+	}
+
+	@Test
+	public void encryptStream_channelSameAsOutputStream() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99999);
+		int blockLength = 1000;
+		Beam beam = new Beam("thePassword", blockLength);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		beam.encrypt(new ByteArrayInputStream(plainBytes), expected, null);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		ByteArrayOutputStream encryptionOutputStream = new ByteArrayOutputStream();
+
+		beam.encrypt(new ByteArrayInputStream(plainBytes), Channels.newChannel(encryptionOutputStream), null);
+
+		assertEquals(TestUtil.toString(expected.toByteArray()), TestUtil.toString(encryptionOutputStream.toByteArray()));
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(beam.decrypt(encryptionOutputStream.toByteArray())));
+	}
+
+
+	@Test
+	public void encryptingHexWriter_sameAsEncryptString() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			text.append("line " + i + " with umlauts \u00e4\u00f6\u00fc and \ud83d\ude00\n");
+		}
+		Beam beam = new Beam("thePassword", 32);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		String expected = beam.encrypt(text.toString());
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		StringWriter encrypted = new StringWriter();
+
+		try (Writer writer = beam.encryptingHexWriter(encrypted)) {
+			writer.write(text.toString(), 0, 1000);
+			writer.write(text.toString().substring(1000));
+		}
+
+		assertEquals(expected, encrypted.toString());
+	}
+
+	@Test
+	public void decryptingHexReader_sameAsDecryptString() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			text.append("line " + i + " with umlauts \u00e4\u00f6\u00fc and \ud83d\ude00\n");
+		}
+		Beam beam = new Beam("thePassword", 32);
+		String encrypted = beam.encrypt(text.toString());
+		StringWriter decrypted = new StringWriter();
+
+		try (Reader reader = beam.decryptingHexReader(new StringReader(encrypted.toLowerCase()))) {
+			char[] buffer = new char[100];
+			int length;
+			while ((length = reader.read(buffer)) != -1) {
+				decrypted.write(buffer, 0, length);
+			}
+		}
+
+		assertEquals(text.toString(), decrypted.toString());
+	}
+
+	@Test
+	public void encryptAndDecryptStrings_allTextEncodings() throws Exception {
+		String plainText = "Lorem ipsum dolor sit amet, consetetur sadipscing elitr, sed diam nonumy eirmod tempor invidunt ut";
+		Beam beam = new Beam("thePassword", 32);
+		int hexLength = beam.encrypt(plainText).length();
+		for (BeamTextEncoding encoding: BeamTextEncoding.values()) {
+			beam.setTextEncoding(encoding);
+
+			String encryptedString = beam.encrypt(plainText);
+
+			assertEquals(plainText, beam.decrypt(encryptedString));
+			assertEquals(encoding.getCodec().getEncodedLength(hexLength / HEX_CHARS_PER_BYTE), encryptedString.length());
+		}
+	}
+
+	@Test
+	public void encryptingWriter_z85SameAsEncryptString() throws Exception {
+		String plainText = "Lorem ipsum dolor sit amet, consetetur sadipscing elitr, sed diam nonumy eirmod tempor invidunt ut";
+		Beam beam = new Beam("thePassword", 33);
+		beam.setTextEncoding(BeamTextEncoding.Z85);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		String expected = beam.encrypt(plainText);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3)));
+		StringWriter encrypted = new StringWriter();
+
+		try (Writer writer = beam.encryptingWriter(encrypted)) {
+			writer.write(plainText);
+		}
+		StringWriter decrypted = new StringWriter();
+		try (Reader reader = beam.decryptingReader(new StringReader(encrypted.toString()))) {
+			int character;
+			while ((character = reader.read()) != -1) {
+				decrypted.write(character);
+			}
+		}
+
+		assertEquals(expected, encrypted.toString());
+		assertEquals(plainText, decrypted.toString());
+	}
+
+	@Test(expected = Exception.class)
+	public void setTextEncoding_null() throws Exception {
+		new Beam("thePassword").setTextEncoding(null);
+	}
 
 	@Test
 	public void getDecryptedLength_simple() throws Exception{
@@ -360,6 +524,168 @@ public class BeamTest{
 		assertEquals(plainBytes.length, decryptedLength);
 	}
 
+/* =============================================================================================================== */
+
+	@Test
+	public void getEncryptedLength_normal() throws Exception {
+		Beam beam = new Beam("thePassword", 32);
+		
+		assertEquals(0, beam.getEncryptedLength(0));
+		assertEquals(34, beam.getEncryptedLength(1));
+		assertEquals(34, beam.getEncryptedLength(32));
+		assertEquals(68, beam.getEncryptedLength(33));
+	}
+	
+	@Test
+	public void encryptIntoAndDecryptInto_withOffsets() throws Exception {
+		String password = "thePassword";
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		int blockLength = 32;
+		int plainOffset = 10;
+		int plainLength = 70;
+		Beam encryptionBeam = new Beam(password, blockLength);
+		Beam decryptionBeam = new Beam(password, blockLength);
+		
+		int encryptedLength = (int)encryptionBeam.getEncryptedLength(plainLength);
+		byte[] encryptedBytes = new byte[encryptedLength + 5];
+		int writtenEncrypted = encryptionBeam.encryptInto(plainBytes, plainOffset, plainLength, encryptedBytes, 3);
+		byte[] decryptedBytes = new byte[plainLength + 7];
+		int writtenDecrypted = decryptionBeam.decryptInto(encryptedBytes, 3, encryptedLength, decryptedBytes, 7);
+		
+		byte[] expected = new byte[plainLength];
+		System.arraycopy(plainBytes, plainOffset, expected, 0, plainLength);
+		byte[] decryptedPart = new byte[plainLength];
+		System.arraycopy(decryptedBytes, 7, decryptedPart, 0, plainLength);
+		assertEquals(encryptedLength, writtenEncrypted);
+		assertEquals(plainLength, decryptionBeam.getDecryptedLength(encryptedBytes, 3, encryptedLength));
+		assertEquals(plainLength, writtenDecrypted);
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(decryptedPart));
+	}
+
+	@Test
+	public void encryptInto_sameResultAsEncrypt() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		byte[] fakeRandomNumbers = TestUtil.byteArray(1, 2, 3, 4, 5);
+		Beam beam = new Beam("thePassword", 32);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		byte[] expected = beam.encrypt(plainBytes);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		byte[] result = new byte[expected.length];
+		beam.encryptInto(plainBytes, 0, plainBytes.length, result, 0);
+		
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(result));
+	}
+	
+	@Test(expected = Exception.class)
+	public void encryptInto_destinationTooSmall() throws Exception {
+		Beam beam = new Beam("thePassword", 32);
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 40);
+		beam.encryptInto(plainBytes, 0, plainBytes.length, new byte[67], 0);
+	}
+	
+	@Test(expected = Exception.class)
+	public void decryptInto_corruptLength() throws Exception {
+		Beam beam = new Beam("thePassword", 32);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, 40));
+		beam.decryptInto(encryptedBytes, 0, encryptedBytes.length - 1, new byte[100], 0);
+	}
+
+	@Test
+	public void encryptByteBuffer_sameResultAsEncryptHeap() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		byte[] fakeRandomNumbers = TestUtil.byteArray(1, 2, 3, 4, 5);
+		Beam beam = new Beam("thePassword", 32);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		byte[] expected = beam.encrypt(plainBytes);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		ByteBuffer src = ByteBuffer.allocate(plainBytes.length + 10);
+		src.position(5);
+		src.put(plainBytes);
+		src.flip();
+		src.position(5);
+		ByteBuffer dst = ByteBuffer.allocate(expected.length + 3);
+		dst.position(3);
+		int written = beam.encrypt(src, dst);
+		
+		assertEquals(expected.length, written);
+		assertEquals(src.limit(), src.position());
+		assertEquals(dst.capacity(), dst.position());
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(readBytes(dst, 3, expected.length)));
+	}
+
+	@Test
+	public void encryptByteBufferAndDecryptByteBuffer_direct() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		byte[] fakeRandomNumbers = TestUtil.byteArray(1, 2, 3, 4, 5);
+		Beam beam = new Beam("thePassword", 32);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		byte[] expected = beam.encrypt(plainBytes);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		ByteBuffer src = ByteBuffer.allocateDirect(plainBytes.length);
+		src.put(plainBytes);
+		src.flip();
+		ByteBuffer encrypted = ByteBuffer.allocateDirect(expected.length);
+		int writtenEncrypted = beam.encrypt(src, encrypted);
+		encrypted.flip();
+		ByteBuffer decrypted = ByteBuffer.allocateDirect(plainBytes.length);
+		int writtenDecrypted = new Beam("thePassword", 32).decrypt(encrypted, decrypted);
+		
+		assertEquals(expected.length, writtenEncrypted);
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(readBytes(encrypted, 0, expected.length)));
+		assertEquals(plainBytes.length, writtenDecrypted);
+		assertEquals(encrypted.limit(), encrypted.position());
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(readBytes(decrypted, 0, plainBytes.length)));
+	}
+
+	@Test
+	public void encryptByteBufferArrayAndDecryptByteBufferArray_blocksSpanBuffers() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		byte[] fakeRandomNumbers = TestUtil.byteArray(1, 2, 3, 4, 5);
+		Beam beam = new Beam("thePassword", 32);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		byte[] expected = beam.encrypt(plainBytes);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		ByteBuffer[] plainBuffers = splitIntoDirectBuffers(plainBytes, 7, 0, 50, 43);
+		ByteBuffer[] encryptedBuffers = splitIntoDirectBuffers(new byte[expected.length], 1, 40, 35, 0, 60);
+		long writtenEncrypted = beam.encrypt(plainBuffers, encryptedBuffers);
+		byte[] encrypted = joinBuffers(encryptedBuffers);
+		
+		assertEquals(expected.length, writtenEncrypted);
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(encrypted));
+		for (ByteBuffer buffer: encryptedBuffers) {
+			assertEquals(buffer.limit(), buffer.position());
+		}
+		
+		ByteBuffer[] encryptedInputBuffers = splitIntoDirectBuffers(encrypted, 33, 2, 1, 100);
+		ByteBuffer[] decryptedBuffers = splitIntoDirectBuffers(new byte[plainBytes.length], 31, 31, 38);
+		long writtenDecrypted = new Beam("thePassword", 32).decrypt(encryptedInputBuffers, decryptedBuffers);
+
+		assertEquals(plainBytes.length, writtenDecrypted);
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(joinBuffers(decryptedBuffers)));
+	}
+	
+	@Test
+	public void encryptByteBuffer_destinationTooSmall() throws Exception {
+		Beam beam = new Beam("thePassword", 32);
+		ByteBuffer src = ByteBuffer.wrap(TestUtil.byteArrayFromRange(0, 40));
+		ByteBuffer dst = ByteBuffer.allocateDirect(67);
+		try {
+			beam.encrypt(src, dst);
+			fail("Exception expected");
+		} catch (Exception e) {
+			//: expected
+		}
+		assertEquals(0, src.position());
+		assertEquals(0, dst.position());
+	}
+
+	@Test(expected = Exception.class)
+	public void decryptByteBuffer_corruptLength() throws Exception {
+		Beam beam = new Beam("thePassword", 32);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, 40));
+		beam.decrypt(ByteBuffer.wrap(encryptedBytes, 0, encryptedBytes.length - 1), ByteBuffer.allocate(100));
+	}
+
 /* =============================================================================================================== */
 	
 	@Test
@@ -604,6 +930,287 @@ public class BeamTest{
 	}
 
 
+	/**
+	 * the encrypted bytes must stay the same in all versions so that data encrypted with older versions can still be decrypted 
+	 */
+	@Test
+	public void encryptBytes_knownResult() throws Exception {
+		byte[] plainBytes = new byte[70];
+		for (int i = 0; i < plainBytes.length; i++) {
+			plainBytes[i] = (byte)(i * 7);
+		}
+		Beam beam = new Beam("thePassword", 32);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(1, 2, 3, 4, 5)));
+		String expected = "80A0F4B9EA5D3FF74BC3D23E0D02C72284F998839C227D99214CCA87BDF1F177B72A80A0D499CA3D1FD72BA3B21EEDE2A70264D978637C025D79012CAA679DD1D157970A808685788C909B6573717A7775645267447863436D783D70600C6647716A76377C75";
+		
+		assertEquals(expected, BeamUtil.byteArrayToHexString(beam.encrypt(plainBytes)));
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(beam.decrypt(BeamUtil.hexStringToByteArray(expected))));
+	}
+	
+	@Test
+	public void encryptBytes_knownResultLongPassword() throws Exception {
+		byte[] plainBytes = new byte[70];
+		for (int i = 0; i < plainBytes.length; i++) {
+			plainBytes[i] = (byte)(i * 7);
+		}
+		Beam beam = new Beam("another password that is longer", 100);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(TestUtil.byteArray(9, 8, 7)));
+		String expected = "80C663625B57654070D38B47B4DDBCE2049F4E6704CF933A72CFA5CDAA01E1954B234E475951016E0DBA141B52626CC637AB160DDE41EB2EF4BF155B08C3C050020D0CDC6BF3604096595863E32C52AD656A61653C0A6563014165B1983BC6D761D9C9CF4D59";
+		
+		assertEquals(expected, BeamUtil.byteArrayToHexString(beam.encrypt(plainBytes)));
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(beam.decrypt(BeamUtil.hexStringToByteArray(expected))));
+	}
+
+	@Test
+	public void compactMode_shortMessage() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(1, 12);
+		Beam beam = new Beam("thePassword");
+		beam.setCompactMode(true);
+
+		byte[] encryptedBytes = beam.encrypt(plainBytes);
+
+		assertEquals(DATA_IN_BLOCK_SIZE_LENGTH + 32, encryptedBytes.length);
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(beam.decrypt(encryptedBytes)));
+	}
+
+	@Test
+	public void compactMode_allLengths() throws Exception {
+		int blockLength = 100;
+		Beam encryptionBeam = new Beam("thePassword", blockLength);
+		encryptionBeam.setCompactMode(true);
+		Beam decryptionBeam = new Beam("thePassword", blockLength);
+		decryptionBeam.setCompactMode(true);
+
+		for (int length = 0; length <= 350; length++) {
+			byte[] plainBytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				plainBytes[i] = (byte)(i * 13);
+			}
+			byte[] encryptedBytes = encryptionBeam.encrypt(plainBytes);
+
+			int lastDataLength = length % blockLength;
+			int expectedLength = (length / blockLength) * (DATA_IN_BLOCK_SIZE_LENGTH + blockLength);
+			if (lastDataLength > 0) {
+				expectedLength += DATA_IN_BLOCK_SIZE_LENGTH + Math.min(blockLength, Math.max(32, (lastDataLength + 15) / 16 * 16));
+			}
+			assertEquals("length " + length, expectedLength, encryptedBytes.length);
+			assertEquals("length " + length, TestUtil.toString(plainBytes), TestUtil.toString(decryptionBeam.decrypt(encryptedBytes)));
+		}
+	}
+
+	@Test
+	public void compactMode_fullBlocksSameAsNormalMode() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 63);
+		Beam normalBeam = new Beam("thePassword", 32);
+		Beam compactBeam = new Beam("thePassword", 32);
+		compactBeam.setCompactMode(true);
+
+		assertEquals(TestUtil.toString(normalBeam.encrypt(plainBytes)), TestUtil.toString(compactBeam.encrypt(plainBytes)));
+	}
+
+	@Test
+	public void compactMode_strings() throws Exception {
+		Beam beam = new Beam("thePassword");
+		beam.setCompactMode(true);
+		beam.setTextEncoding(BeamTextEncoding.BASE64_URL);
+
+		String encrypted = beam.encrypt("token-123456");
+
+		assertEquals(46, encrypted.length());
+		assertEquals("token-123456", beam.decrypt(encrypted));
+	}
+
+	@Test
+	public void compactMode_decryptWithoutCompactModeFails() throws Exception {
+		Beam compactBeam = new Beam("thePassword");
+		compactBeam.setCompactMode(true);
+		byte[] encryptedBytes = compactBeam.encrypt(TestUtil.byteArrayFromRange(1, 12));
+
+		try {
+			new Beam("thePassword").decrypt(encryptedBytes);
+			fail("Exception expected");
+		} catch (Exception e) {
+			//: expected
+		}
+	}
+
+	@Test
+	public void compactMode_corruptLength() throws Exception {
+		Beam beam = new Beam("thePassword", 100);
+		beam.setCompactMode(true);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(1, 120));
+		byte[] corruptBytes = new byte[encryptedBytes.length - 1];
+		System.arraycopy(encryptedBytes, 0, corruptBytes, 0, corruptBytes.length);
+
+		try {
+			beam.decrypt(corruptBytes);
+			fail("Exception expected");
+		} catch (Exception e) {
+			//: expected
+		}
+	}
+
+	@Test
+	public void formatHeader_bytesAutoConfigureBlockLength() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 199);
+		Beam encryptionBeam = new Beam("thePassword", 64);
+		encryptionBeam.setFormatHeader(true);
+		Beam decryptionBeam = new Beam("thePassword", 1024);
+		decryptionBeam.setAcceptedBlockLengths(64);
+
+		byte[] encryptedBytes = encryptionBeam.encrypt(plainBytes);
+
+		assertEquals(FormatHeader.LENGTH + 4 * (DATA_IN_BLOCK_SIZE_LENGTH + 64), encryptedBytes.length);
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(decryptionBeam.decrypt(encryptedBytes)));
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(encryptionBeam.decrypt(encryptedBytes)));
+	}
+
+	@Test
+	public void formatHeader_legacyDataStillReadable() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 99);
+		Beam legacyBeam = new Beam("thePassword", 32);
+		Beam headerBeam = new Beam("thePassword", 32);
+		headerBeam.setFormatHeader(true);
+
+		byte[] encryptedBytes = legacyBeam.encrypt(plainBytes);
+
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(headerBeam.decrypt(encryptedBytes)));
+		InputStream stream = headerBeam.getDecryptedInputStream(new ByteArrayInputStream(encryptedBytes), null);
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(BeamUtil.readAllBytes(stream)));
+	}
+
+	@Test
+	public void formatHeader_legacyDataStartingWithFirstMagicBytesStillReadable() throws Exception {
+		//: the data length 65535 of the first block is stored as the first 2 magic bytes
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 65534);
+		Beam beam = new Beam("thePassword", 65536);
+
+		byte[] encryptedBytes = beam.encrypt(plainBytes);
+
+		assertEquals(127, encryptedBytes[0]);
+		assertEquals(127, encryptedBytes[1]);
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(beam.decrypt(encryptedBytes)));
+	}
+
+	@Test
+	public void formatHeader_compactModeFromHeader() throws Exception {
+		Beam encryptionBeam = new Beam("thePassword");
+		encryptionBeam.setFormatHeader(true);
+		encryptionBeam.setCompactMode(true);
+		Beam decryptionBeam = new Beam("thePassword", 256);
+		decryptionBeam.setAcceptedBlockLengths(Beam.DEFAULT_BLOCK_LENGTH);
+
+		String encrypted = encryptionBeam.encrypt("my text");
+
+		assertEquals(HEX_CHARS_PER_BYTE * (FormatHeader.LENGTH + DATA_IN_BLOCK_SIZE_LENGTH + 32), encrypted.length());
+		assertEquals("my text", decryptionBeam.decrypt(encrypted));
+	}
+
+	@Test
+	public void formatHeader_compactModeInStreamFails() throws Exception {
+		Beam encryptionBeam = new Beam("thePassword");
+		encryptionBeam.setFormatHeader(true);
+		encryptionBeam.setCompactMode(true);
+		byte[] encryptedBytes = encryptionBeam.encrypt(TestUtil.byteArrayFromRange(0, 9));
+
+		try {
+			new Beam("thePassword").decrypt(new ByteArrayInputStream(encryptedBytes), new ByteArrayOutputStream(), null);
+			fail("Exception expected");
+		} catch (Exception e) {
+			//: expected
+		}
+	}
+
+	@Test
+	public void formatHeader_streams() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 999);
+		Beam encryptionBeam = new Beam("thePassword", 100);
+		encryptionBeam.setFormatHeader(true);
+		Beam decryptionBeam = new Beam("thePassword", 32);
+		decryptionBeam.setAcceptedBlockLengths(100);
+
+		ByteArrayOutputStream encryptedOutput = new ByteArrayOutputStream();
+		OutputStream encryptedStream = encryptionBeam.getEncryptedOutputStream(encryptedOutput, null);
+		encryptedStream.write(plainBytes);
+		encryptedStream.close();
+		byte[] encryptedBytes = encryptedOutput.toByteArray();
+
+		ByteArrayOutputStream batchOutput = new ByteArrayOutputStream();
+		encryptionBeam.encrypt(new ByteArrayInputStream(plainBytes), batchOutput, null);
+		assertEquals(encryptedBytes.length, batchOutput.size());
+		assertEquals(FormatHeader.LENGTH + 10 * (DATA_IN_BLOCK_SIZE_LENGTH + 100), encryptedBytes.length);
+
+		InputStream decryptedStream = decryptionBeam.getDecryptedInputStream(new ByteArrayInputStream(encryptedBytes), null);
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(BeamUtil.readAllBytes(decryptedStream)));
+
+		ByteArrayOutputStream decryptedOutput = new ByteArrayOutputStream();
+		decryptionBeam.decrypt(new ByteArrayInputStream(batchOutput.toByteArray()), decryptedOutput, null);
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(decryptedOutput.toByteArray()));
+
+		assertEquals(plainBytes.length, decryptionBeam.getDecryptedLength(new ByteArrayInputStream(encryptedBytes), null));
+	}
+
+	@Test
+	public void formatHeader_parallelStreams() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 999);
+		Beam encryptionBeam = new Beam("thePassword", 100);
+		encryptionBeam.setFormatHeader(true);
+		encryptionBeam.setParallelStreamProcessing(true);
+		Beam decryptionBeam = new Beam("thePassword", 32);
+		decryptionBeam.setAcceptedBlockLengths(100);
+		decryptionBeam.setParallelStreamProcessing(true);
+
+		ByteArrayOutputStream encryptedOutput = new ByteArrayOutputStream();
+		encryptionBeam.encrypt(new ByteArrayInputStream(plainBytes), encryptedOutput, null);
+		ByteArrayOutputStream decryptedOutput = new ByteArrayOutputStream();
+		decryptionBeam.decrypt(new ByteArrayInputStream(encryptedOutput.toByteArray()), decryptedOutput, null);
+
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(decryptedOutput.toByteArray()));
+	}
+
+	@Test
+	public void formatHeader_blockLengthNotAccepted() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 199);
+		Beam encryptionBeam = new Beam("thePassword", 64);
+		encryptionBeam.setFormatHeader(true);
+		Beam decryptionBeam = new Beam("thePassword", 1024);
+		decryptionBeam.setAcceptedBlockLengths(32, 128);
+		byte[] encryptedBytes = encryptionBeam.encrypt(plainBytes);
+
+		try {
+			decryptionBeam.decrypt(encryptedBytes);
+			fail("Exception expected");
+		} catch (Exception e) {
+			//: expected
+		}
+		try {
+			BeamUtil.readAllBytes(decryptionBeam.getDecryptedInputStream(new ByteArrayInputStream(encryptedBytes), null));
+			fail("Exception expected");
+		} catch (Exception e) {
+			//: expected
+		}
+	}
+
+	@Test(expected = Exception.class)
+	public void setAcceptedBlockLengths_invalidBlockLength() throws Exception {
+		new Beam("thePassword").setAcceptedBlockLengths(64, 16);
+	}
+
+	@Test
+	public void formatHeader_emptyData() throws Exception {
+		Beam beam = new Beam("thePassword");
+		beam.setFormatHeader(true);
+
+		byte[] encryptedBytes = beam.encrypt(new byte[0]);
+		ByteArrayOutputStream encryptedOutput = new ByteArrayOutputStream();
+		beam.getEncryptedOutputStream(encryptedOutput, null).close();
+
+		assertEquals(FormatHeader.LENGTH, encryptedBytes.length);
+		assertEquals(FormatHeader.LENGTH, encryptedOutput.size());
+		assertEquals(0, beam.decrypt(encryptedBytes).length);
+		assertEquals(0, BeamUtil.readAllBytes(beam.getDecryptedInputStream(new ByteArrayInputStream(encryptedBytes), null)).length);
+	}
+
 	@Test
 	public void encrypt_simpleString() throws Exception {
 		Beam beam = new Beam("myPassword");
@@ -612,6 +1219,35 @@ public class BeamTest{
 		log("encrypt_simple: encrypted = >>" + encrypted + "<<");
 	}
 
+	private byte[] readBytes(ByteBuffer buffer, int position, int length) {
+		byte[] result = new byte[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = buffer.get(position + i);
+		}
+		return result;
+	}
+
+	private ByteBuffer[] splitIntoDirectBuffers(byte[] data, int... lengths) {
+		ByteBuffer[] result = new ByteBuffer[lengths.length];
+		int pos = 0;
+		for (int i = 0; i < lengths.length; i++) {
+			result[i] = ByteBuffer.allocateDirect(lengths[i]);
+			result[i].put(data, pos, lengths[i]);
+			result[i].flip();
+			pos += lengths[i];
+		}
+		return result;
+	}
+
+	private byte[] joinBuffers(ByteBuffer[] buffers) {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		for (ByteBuffer buffer: buffers) {
+			byte[] bytes = readBytes(buffer, 0, buffer.capacity());
+			result.write(bytes, 0, bytes.length);
+		}
+		return result.toByteArray();
+	}
+
 	private void log(String message) {
 		if (ENABLE_LOGGING) {
 			System.out.println("BeamTest> " + message);
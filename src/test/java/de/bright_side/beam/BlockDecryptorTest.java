@@ -2,7 +2,7 @@ package de.bright_side.beam;
 
 import static org.junit.Assert.assertEquals;
 
-import java.util.SortedMap;
+import java.nio.ByteBuffer;
 
 import org.junit.Test;
 
@@ -11,12 +11,12 @@ public class BlockDecryptorTest {
 	@Test
 	public void process_fullBlock() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 3, 1, 0, 2, 4, 3, 1, 4, 5, 5, 2);
+		int[] posSwitchTable = TestUtil.intArray(3, 0, 4, 1, 5, 2);
 		int digitSum = 2;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		byte[] plainBlock = TestUtil.byteArray(0, 10, 20, 30, 40, 50);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
-		BlockDecryptor blockDecryptor = new BlockDecryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
+		BlockDecryptor blockDecryptor = createBlockDecryptor(key, posSwitchTable, digitSum);
 		byte[] encryptedBytes = blockEncryptor.process(plainBlock);
 
 		Block block = new Block();
@@ -30,13 +30,13 @@ public class BlockDecryptorTest {
 	@Test
 	public void process_blockWithPadding() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 3, 1, 0, 2, 4, 3, 1, 4, 5, 5, 2);
+		int[] posSwitchTable = TestUtil.intArray(3, 0, 4, 1, 5, 2);
 		int digitSum = 2;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		byte[] plainBlock = TestUtil.byteArray(0, 10, 20, 30);
 		byte[] plainBlockWithPadding = TestUtil.byteArray(0, 10, 20, 30, 99, 99);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
-		BlockDecryptor blockDecryptor = new BlockDecryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
+		BlockDecryptor blockDecryptor = createBlockDecryptor(key, posSwitchTable, digitSum);
 		byte[] encryptedBytes = blockEncryptor.process(plainBlockWithPadding);
 		
 		Block block = new Block();
@@ -46,4 +46,39 @@ public class BlockDecryptorTest {
 		
 		assertEquals(TestUtil.toString(plainBlock), TestUtil.toString(decryptedBytes));
 	}
+
+	@Test
+	public void processDirectBuffers_blockWithPadding() {
+		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
+		int[] posSwitchTable = TestUtil.intArray(3, 0, 4, 1, 5, 2);
+		int digitSum = 2;
+		int blockLength = posSwitchTable.length;
+		byte[] plainBlockWithPadding = TestUtil.byteArray(0, 10, 20, 30, 99, 99);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
+		BlockDecryptor blockDecryptor = createBlockDecryptor(key, posSwitchTable, digitSum);
+		byte[] encryptedBytes = blockEncryptor.process(plainBlockWithPadding);
+		ByteBuffer source = ByteBuffer.allocateDirect(blockLength + 1);
+		for (int i = 0; i < blockLength; i++) {
+			source.put(i + 1, encryptedBytes[i]);
+		}
+		ByteBuffer destination = ByteBuffer.allocateDirect(6);
+		destination.put(4, (byte)77);
+
+		blockDecryptor.process(source, 1, 4, destination, 0);
+
+		byte[] result = new byte[6];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = destination.get(i);
+		}
+		assertEquals(TestUtil.toString(TestUtil.byteArray(0, 10, 20, 30, 77, 0)), TestUtil.toString(result));
+		assertEquals(0, source.position());
+		assertEquals(0, destination.position());
+	}
+
+	private BlockDecryptor createBlockDecryptor(byte[] key, int[] posSwitchTable, int digitSum) {
+		int[] inversePosSwitchTable = new PosSwitchMapCreator().createInverse(posSwitchTable);
+		KeyCreator keyCreator = new KeyCreator();
+		byte[] keyStream = keyCreator.createKeyStream(key, digitSum, posSwitchTable.length);
+		return new BlockDecryptor(inversePosSwitchTable, keyCreator.createKeyStreamInPlainOrder(keyStream, inversePosSwitchTable));
+	}
 }
@@ -2,7 +2,7 @@ package de.bright_side.beam;
 
 import static org.junit.Assert.assertEquals;
 
-import java.util.SortedMap;
+import java.nio.ByteBuffer;
 
 import org.junit.Test;
 
@@ -10,12 +10,12 @@ public class BlockEncryptorTest {
 	@Test
 	public void process_switchMapWithoutSwitch() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3, 4, 5);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5);
+		int[] posSwitchTable = TestUtil.intArray(0, 1, 2, 3, 4, 5);
 		int digitSum = 0;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		byte[] block = TestUtil.byteArray(0, 10, 20, 30, 40, 50);
 		byte[] expectedResult = TestUtil.byteArray(0 + 0, 10 + 1, 20 + 2, 30 + 3, 40 + 4, 50 + 5);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
 		
 		byte[] result = blockEncryptor.process(block);
 		
@@ -25,12 +25,12 @@ public class BlockEncryptorTest {
 	@Test
 	public void process_switchMapWithoutSwitchDigitSum1() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3, 4, 5);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5);
+		int[] posSwitchTable = TestUtil.intArray(0, 1, 2, 3, 4, 5);
 		int digitSum = 1;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		byte[] block = TestUtil.byteArray(0, 10, 20, 30, 40, 50);
 		byte[] expectedResult = TestUtil.byteArray(0 + 1, 10 + 2, 20 + 3, 30 + 4, 40 + 5, 50 + 0);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
 		
 		byte[] result = blockEncryptor.process(block);
 		
@@ -40,12 +40,12 @@ public class BlockEncryptorTest {
 	@Test
 	public void process_switchMapWithoutSwitchKeyShort() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5);
+		int[] posSwitchTable = TestUtil.intArray(0, 1, 2, 3, 4, 5);
 		int digitSum = 0;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		byte[] block = TestUtil.byteArray(0, 10, 20, 30, 40, 50);
 		byte[] expectedResult = TestUtil.byteArray(0 + 0, 10 + 1, 20 + 2, 30 + 3, 40 + 0, 50 + 1);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
 		
 		byte[] result = blockEncryptor.process(block);
 		
@@ -55,13 +55,13 @@ public class BlockEncryptorTest {
 	@Test
 	public void process_switchMapShift1() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3, 4, 5);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 0);
+		int[] posSwitchTable = TestUtil.intArray(1, 2, 3, 4, 5, 0);
 		int digitSum = 0;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		
 		byte[] block = TestUtil.byteArray(0, 10, 20, 30, 40, 50);
 		byte[] expectedResult = TestUtil.byteArray(10 + 0, 20 + 1, 30 + 2, 40 + 3, 50 + 4, 0 + 5);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
 		
 		byte[] result = blockEncryptor.process(block);
 		
@@ -71,13 +71,13 @@ public class BlockEncryptorTest {
 	@Test
 	public void process_switchMapShift1KeyShort() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 0);
+		int[] posSwitchTable = TestUtil.intArray(1, 2, 3, 4, 5, 0);
 		int digitSum = 0;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		
 		byte[] block = TestUtil.byteArray(0, 10, 20, 30, 40, 50);
 		byte[] expectedResult = TestUtil.byteArray(10 + 0, 20 + 1, 30 + 2, 40 + 3, 50 + 0, 0 + 1);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
 		
 		byte[] result = blockEncryptor.process(block);
 		
@@ -87,13 +87,13 @@ public class BlockEncryptorTest {
 	@Test
 	public void process_switchMapShift1KeyShortDigitSum2() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 0);
+		int[] posSwitchTable = TestUtil.intArray(1, 2, 3, 4, 5, 0);
 		int digitSum = 2;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		
 		byte[] block = TestUtil.byteArray(0, 10, 20, 30, 40, 50);
 		byte[] expectedResult = TestUtil.byteArray(10 + 2, 20 + 3, 30 + 0, 40 + 1, 50 + 2, 0 + 3);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
 		
 		byte[] result = blockEncryptor.process(block);
 		
@@ -103,18 +103,100 @@ public class BlockEncryptorTest {
 	@Test
 	public void process_differentOrderKeyShort() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
-		SortedMap<Integer, Integer> posSwitchMap = TestUtil.intMap(0, 3, 1, 0, 2, 4, 3, 1, 4, 5, 5, 2);
+		int[] posSwitchTable = TestUtil.intArray(3, 0, 4, 1, 5, 2);
 		int digitSum = 2;
-		int blockLength = posSwitchMap.size();
+		int blockLength = posSwitchTable.length;
 		
 		byte[] block = TestUtil.byteArray(0, 10, 20, 30, 40, 50);
 		byte[] expectedResult = TestUtil.byteArray(30 + 2, 0 + 3, 40 + 0, 10 + 1, 50 + 2, 20 + 3);
-		BlockEncryptor blockEncryptor = new BlockEncryptor(key, posSwitchMap, digitSum, blockLength);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, null, new KeyCreator().createKeyStream(key, digitSum, blockLength));
 		
 		byte[] result = blockEncryptor.process(block);
 		
 		assertEquals(TestUtil.toString(expectedResult), TestUtil.toString(result));
 	}
-	
-	
+
+	@Test
+	public void processInPlace_sameResultAsProcess() {
+		byte[] key = TestUtil.byteArray(-5, -99, -12, -3, 17);
+		int blockLength = 100;
+		PosSwitchMapCreator posSwitchMapCreator = new PosSwitchMapCreator();
+		int[] posSwitchTable = posSwitchMapCreator.create(key, blockLength);
+		byte[] block = TestUtil.byteArrayFromRange(0, blockLength - 1);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, posSwitchMapCreator.createCycleStarts(posSwitchTable)
+				, new KeyCreator().createKeyStream(key, 3, blockLength));
+		byte[] expectedResult = blockEncryptor.process(block);
+		byte[] data = new byte[blockLength + 2];
+		System.arraycopy(block, 0, data, 1, blockLength);
+		
+		blockEncryptor.processInPlace(data, 1);
+		
+		byte[] result = new byte[blockLength];
+		System.arraycopy(data, 1, result, 0, blockLength);
+		assertEquals(TestUtil.toString(expectedResult), TestUtil.toString(result));
+	}
+
+	@Test
+	public void processDirectBuffers_sameResultAsProcess() {
+		byte[] key = TestUtil.byteArray(-5, -99, -12, -3, 17);
+		int blockLength = 100;
+		PosSwitchMapCreator posSwitchMapCreator = new PosSwitchMapCreator();
+		int[] posSwitchTable = posSwitchMapCreator.create(key, blockLength);
+		byte[] block = TestUtil.byteArrayFromRange(0, blockLength - 1);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, posSwitchMapCreator.createCycleStarts(posSwitchTable)
+				, new KeyCreator().createKeyStream(key, 3, blockLength));
+		byte[] expectedResult = blockEncryptor.process(block);
+		ByteBuffer source = ByteBuffer.allocateDirect(blockLength + 1);
+		ByteBuffer destination = ByteBuffer.allocateDirect(blockLength + 2);
+		ByteBuffer inPlace = ByteBuffer.allocateDirect(blockLength + 3);
+		for (int i = 0; i < blockLength; i++) {
+			source.put(i + 1, block[i]);
+			inPlace.put(i + 3, block[i]);
+		}
+		
+		blockEncryptor.process(source, 1, destination, 2);
+		blockEncryptor.processInPlace(inPlace, 3);
+		
+		byte[] result = new byte[blockLength];
+		byte[] resultInPlace = new byte[blockLength];
+		for (int i = 0; i < blockLength; i++) {
+			result[i] = destination.get(i + 2);
+			resultInPlace[i] = inPlace.get(i + 3);
+		}
+		assertEquals(TestUtil.toString(expectedResult), TestUtil.toString(result));
+		assertEquals(TestUtil.toString(expectedResult), TestUtil.toString(resultInPlace));
+		assertEquals(0, destination.position());
+	}
+
+	@Test
+	public void processMixedBuffers_sameResultAsProcess() {
+		byte[] key = TestUtil.byteArray(-5, -99, -12, -3, 17);
+		int blockLength = 100;
+		PosSwitchMapCreator posSwitchMapCreator = new PosSwitchMapCreator();
+		int[] posSwitchTable = posSwitchMapCreator.create(key, blockLength);
+		byte[] block = TestUtil.byteArrayFromRange(0, blockLength - 1);
+		BlockEncryptor blockEncryptor = new BlockEncryptor(posSwitchTable, posSwitchMapCreator.createCycleStarts(posSwitchTable)
+				, new KeyCreator().createKeyStream(key, 3, blockLength));
+		byte[] expectedResult = blockEncryptor.process(block);
+		ByteBuffer heapSource = ByteBuffer.wrap(block);
+		ByteBuffer directDestination = ByteBuffer.allocateDirect(blockLength + 2);
+		ByteBuffer directSource = ByteBuffer.allocateDirect(blockLength + 1);
+		ByteBuffer heapDestination = ByteBuffer.allocate(blockLength);
+		for (int i = 0; i < blockLength; i++) {
+			directSource.put(i + 1, block[i]);
+		}
+		directSource.position(5);
+
+		blockEncryptor.process(heapSource, 0, directDestination, 2);
+		blockEncryptor.process(directSource, 1, heapDestination, 0);
+
+		byte[] result = new byte[blockLength];
+		for (int i = 0; i < blockLength; i++) {
+			result[i] = directDestination.get(i + 2);
+		}
+		assertEquals(TestUtil.toString(expectedResult), TestUtil.toString(result));
+		assertEquals(TestUtil.toString(expectedResult), TestUtil.toString(heapDestination.array()));
+		assertEquals(0, directDestination.position());
+		assertEquals(5, directSource.position());
+	}
 }
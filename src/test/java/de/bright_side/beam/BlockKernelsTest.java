@@ -0,0 +1,81 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BlockKernelsTest {
+	private static final String VECTOR_KERNEL_CLASS_NAME = "de.bright_side.beam.VectorBlockKernel";
+
+	@Test
+	public void getKernel_sameResultAsScalarKernel() throws Exception {
+		assertSameResults(BlockKernels.getKernel());
+	}
+
+	@Test
+	public void vectorKernel_sameResultAsScalarKernel() throws Exception {
+		BlockKernel vectorKernel = BlockKernels.createKernel(VECTOR_KERNEL_CLASS_NAME);
+		//: only available on Java 17+ with the module jdk.incubator.vector
+		assumeNotNull(vectorKernel);
+
+		assertTrue(BlockKernels.isSameAs(vectorKernel, new ScalarBlockKernel()));
+		assertSameResults(vectorKernel);
+		if (BlockKernels.VECTOR_KERNEL_NAME.equals(System.getProperty(BlockKernels.KERNEL_PROPERTY))) {
+			assertEquals(VECTOR_KERNEL_CLASS_NAME, BlockKernels.getKernel().getClass().getName());
+		}
+	}
+
+	@Test
+	public void getKernel_selectedByProperty() throws Exception {
+		String kernelName = System.getProperty(BlockKernels.KERNEL_PROPERTY);
+		if (!BlockKernels.VECTOR_KERNEL_NAME.equals(kernelName)) {
+			//: the vector kernel is only used if selected with the property
+			assertEquals(ScalarBlockKernel.class, BlockKernels.getKernel().getClass());
+		}
+	}
+
+	@Test
+	public void createKernel_unknownClass() throws Exception {
+		assertNull(BlockKernels.createKernel("de.bright_side.beam.UnknownBlockKernel"));
+	}
+
+	@Test
+	public void isSameAs_wrongKernel() throws Exception {
+		BlockKernel wrongKernel = new ScalarBlockKernel() {
+			@Override
+			public void gatherAdd(byte[] source, int sourceOffset, int[] table, byte[] key, byte[] destination, int destinationOffset, int length) {
+				super.gatherAdd(source, sourceOffset, table, key, destination, destinationOffset, length);
+				destination[destinationOffset + length - 1] ++;
+			}
+		};
+		assertFalse(BlockKernels.isSameAs(wrongKernel, new ScalarBlockKernel()));
+	}
+
+	private void assertSameResults(BlockKernel kernel) {
+		ScalarBlockKernel scalarKernel = new ScalarBlockKernel();
+		Random random = new Random(42);
+		for (int length = 1; length <= 300; length++) {
+			byte[] source = new byte[length + 7];
+			byte[] key = new byte[length];
+			random.nextBytes(source);
+			random.nextBytes(key);
+			int[] table = new PosSwitchMapCreator().create(key, length);
+
+			byte[] expected = new byte[length + 3];
+			byte[] result = new byte[length + 3];
+			scalarKernel.gatherAdd(source, 7, table, key, expected, 3, length);
+			kernel.gatherAdd(source, 7, table, key, result, 3, length);
+			assertEquals("length " + length, TestUtil.toString(expected), TestUtil.toString(result));
+
+			scalarKernel.gatherSubtract(source, 7, table, key, expected, 3, length);
+			kernel.gatherSubtract(source, 7, table, key, result, 3, length);
+			assertEquals("length " + length, TestUtil.toString(expected), TestUtil.toString(result));
+		}
+	}
+}
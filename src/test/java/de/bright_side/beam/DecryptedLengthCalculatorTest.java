@@ -0,0 +1,175 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DecryptedLengthCalculatorTest {
+	private static final String PASSWORD = "thePassword";
+	private static final int BLOCK_LENGTH = 32;
+	private static final int THREAD_COUNT = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void getDecryptedLength_fullBlocks() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		Path encrypted = writeFile("encrypted", beam.encrypt(TestUtil.byteArrayFromRange(0, 1000)));
+
+		assertEquals(1001, beam.getDecryptedLength(encrypted));
+	}
+
+	@Test
+	public void getDecryptedLength_emptyFile() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		Path encrypted = writeFile("encrypted", new byte[0]);
+
+		assertEquals(0, beam.getDecryptedLength(encrypted));
+	}
+
+	@Test
+	public void getDecryptedLength_singleBlock() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		Path encrypted = writeFile("encrypted", beam.encrypt(TestUtil.byteArrayFromRange(0, 9)));
+
+		assertEquals(10, beam.getDecryptedLength(encrypted));
+	}
+
+	@Test
+	public void getDecryptedLength_penultimateBlockNotFull() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = concat(beam.encrypt(TestUtil.byteArrayFromRange(0, 500)), beam.encrypt(TestUtil.byteArrayFromRange(0, 4)));
+		Path encrypted = writeFile("encrypted", encryptedBytes);
+
+		try (FileChannel channel = open(encrypted)) {
+			assertEquals(506, new DecryptedLengthCalculator(BLOCK_LENGTH, THREAD_COUNT).getDecryptedLength(channel));
+		}
+	}
+
+	@Test
+	public void getDecryptedLength_interiorBlockNotFull() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = concat(beam.encrypt(TestUtil.byteArrayFromRange(0, 40)), beam.encrypt(TestUtil.byteArrayFromRange(0, 600)));
+		Path encrypted = writeFile("encrypted", encryptedBytes);
+
+		try (FileChannel channel = open(encrypted)) {
+			assertEquals(642, new DecryptedLengthCalculator(BLOCK_LENGTH, THREAD_COUNT).getDecryptedLength(channel));
+		}
+	}
+
+	@Test
+	public void getDecryptedLength_unsampledMiddleBlockNotFull() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		//: block 3 of 33 blocks only contains 4 bytes
+		byte[] encryptedBytes = concat(beam.encrypt(TestUtil.byteArrayFromRange(0, 99)), beam.encrypt(TestUtil.byteArrayFromRange(0, 899)));
+		Path encrypted = writeFile("encrypted", encryptedBytes);
+
+		try (FileChannel channel = open(encrypted)) {
+			assertEquals(1000, new DecryptedLengthCalculator(BLOCK_LENGTH, THREAD_COUNT).getDecryptedLength(channel));
+		}
+		assertEquals(1000, beam.getDecryptedLength(encrypted));
+	}
+
+	@Test
+	public void getDecryptedLength_onlyLastHeaderReadIfInteriorBlocksFull() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		//: block 1 of 3 blocks only contains 4 bytes, but the caller states that all interior blocks are full
+		byte[] encryptedBytes = concat(beam.encrypt(TestUtil.byteArrayFromRange(0, 35)), beam.encrypt(TestUtil.byteArrayFromRange(0, 9)));
+		Path encrypted = writeFile("encrypted", concat(new byte[5], encryptedBytes));
+
+		try (FileChannel channel = open(encrypted)) {
+			assertEquals(2 * BLOCK_LENGTH + 10, new DecryptedLengthCalculator(BLOCK_LENGTH, THREAD_COUNT).getDecryptedLength(channel, 5, true));
+			assertEquals(46, new DecryptedLengthCalculator(BLOCK_LENGTH, THREAD_COUNT).getDecryptedLength(channel, 5, false));
+		}
+	}
+
+	@Test
+	public void getDecryptedLength_formatHeaderWithoutPartialBlocks() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		beam.setFormatHeader(true);
+		Path encrypted = writeFile("encrypted", encryptWithStream(beam, 100, 900));
+
+		try (FileChannel channel = open(encrypted)) {
+			assertFalse(FormatHeader.read(channel).hasPartialBlocks());
+		}
+		assertEquals(1000, beam.getDecryptedLength(encrypted));
+	}
+
+	@Test
+	public void getDecryptedLength_formatHeaderWithPartialBlocks() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		beam.setFormatHeader(true);
+		beam.setFlushPolicy(BeamFlushPolicy.EMIT_PARTIAL_BLOCK);
+		Path encrypted = writeFile("encrypted", encryptWithStream(beam, 100, 900));
+
+		try (FileChannel channel = open(encrypted)) {
+			assertTrue(FormatHeader.read(channel).hasPartialBlocks());
+		}
+		assertEquals(1000, beam.getDecryptedLength(encrypted));
+	}
+
+	@Test
+	public void getDecryptedLength_channelPositionUnchanged() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		Path encrypted = writeFile("encrypted", beam.encrypt(TestUtil.byteArrayFromRange(0, 1000)));
+
+		try (FileChannel channel = open(encrypted)) {
+			channel.position(17);
+			assertEquals(1001, beam.getDecryptedLength(channel));
+			assertEquals(17, channel.position());
+		}
+	}
+
+	@Test(expected = Exception.class)
+	public void getDecryptedLength_corruptLength() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, 100));
+		byte[] corrupt = new byte[encryptedBytes.length - 1];
+		System.arraycopy(encryptedBytes, 0, corrupt, 0, corrupt.length);
+
+		beam.getDecryptedLength(writeFile("encrypted", corrupt));
+	}
+
+	/**
+	 * writes firstLength bytes to the encrypted output stream, flushes it and writes secondLength bytes
+	 */
+	private byte[] encryptWithStream(Beam beam, int firstLength, int secondLength) throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, firstLength + secondLength - 1);
+		ByteArrayOutputStream encryptedOutput = new ByteArrayOutputStream();
+		OutputStream stream = beam.getEncryptedOutputStream(encryptedOutput, null);
+		stream.write(plainBytes, 0, firstLength);
+		stream.flush();
+		stream.write(plainBytes, firstLength, secondLength);
+		stream.close();
+		return encryptedOutput.toByteArray();
+	}
+
+	private FileChannel open(Path path) throws Exception {
+		return FileChannel.open(path, StandardOpenOption.READ);
+	}
+
+	private byte[] concat(byte[] data1, byte[] data2) {
+		byte[] result = new byte[data1.length + data2.length];
+		System.arraycopy(data1, 0, result, 0, data1.length);
+		System.arraycopy(data2, 0, result, data1.length, data2.length);
+		return result;
+	}
+
+	private Path writeFile(String name, byte[] data) throws Exception {
+		Path result = folder.getRoot().toPath().resolve(name);
+		Files.write(result, data);
+		return result;
+	}
+}
@@ -1,8 +1,10 @@
 package de.bright_side.beam;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 
 import org.junit.Test;
@@ -19,7 +21,7 @@ public class EncryptedBlockReaderTest {
 		Block result = reader.readNextBlock();
 		
 		assertEquals(5, result.getLength());
-		assertEquals(TestUtil.bytesToString(0, 10, 20, 30, 40), TestUtil.toString(result.getData()));
+		assertEquals(TestUtil.bytesToString(0, 10, 20, 30, 40), TestUtil.toString(getBlockBytes(result, 5)));
 	}
 
 	@Test
@@ -32,7 +34,65 @@ public class EncryptedBlockReaderTest {
 		Block result = reader.readNextBlock();
 		
 		assertEquals(3, result.getLength());
-		assertEquals(TestUtil.bytesToString(0, 10, 20, 30, 40), TestUtil.toString(result.getData()));
+		assertEquals(TestUtil.bytesToString(0, 10, 20, 30, 40), TestUtil.toString(getBlockBytes(result, 5)));
+	}
+
+	@Test
+	public void readNextBlock_manyBlocksWithSmallReadAhead() throws Exception {
+		Beam beam = new Beam("thePassword", 32);
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 299);
+		byte[] encryptedBytes = beam.encrypt(plainBytes);
+		//: the read-ahead buffer holds 3 encrypted blocks so the remaining bytes are moved to the start of the buffer
+		EncryptedBlockReader reader = new EncryptedBlockReader(new OneByteInputStream(encryptedBytes), 32, 3 * 34 + 10);
+		BlockDecryptor decryptor = beam.createBlockDecryptor();
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+		Block block = reader.readNextBlock();
+		while (block != null) {
+			result.write(decryptor.process(block));
+			block = reader.readNextBlock();
+		}
+
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(result.toByteArray()));
+	}
+
+	@Test
+	public void readNextBlock_skipData() throws Exception {
+		Beam beam = new Beam("thePassword", 32);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, 79));
+		EncryptedBlockReader reader = new EncryptedBlockReader(new ByteArrayInputStream(encryptedBytes), 32, 34);
+
+		assertEquals(32, reader.readNextBlock(true).getLength());
+		assertEquals(32, reader.readNextBlock(true).getLength());
+		assertEquals(16, reader.readNextBlock(true).getLength());
+		assertNull(reader.readNextBlock(true));
+	}
+
+	@Test(expected = Exception.class)
+	public void readNextBlock_incompleteBlock() throws Exception {
+		byte[] lengthBytes = BeamUtil.get2BytesFromPosInt(5);
+		InputStream input = new ByteArrayInputStream(TestUtil.byteArray(lengthBytes[0], lengthBytes[1], 0, 10, 20, 30));
+
+		new EncryptedBlockReader(input, 5).readNextBlock();
+	}
+
+	/**
+	 * returns only one byte per read call like a slow network stream
+	 */
+	private static class OneByteInputStream extends ByteArrayInputStream {
+		public OneByteInputStream(byte[] data) {
+			super(data);
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(1, len));
+		}
+	}
+
+	private byte[] getBlockBytes(Block block, int blockLength) {
+		byte[] result = new byte[blockLength];
+		System.arraycopy(block.getData(), block.getOffset(), result, 0, blockLength);
+		return result;
 	}
-	
 }
@@ -0,0 +1,97 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.PushbackInputStream;
+
+import org.junit.Test;
+
+public class FormatHeaderTest {
+
+	@Test
+	public void create_knownBytes() throws Exception {
+		assertEquals("127, 127, 66, 69, 65, 77, 26, 10, 1, 15, 1, 1, 0, 0, 66", TestUtil.toString(FormatHeader.create(65536, true, false)));
+		assertEquals("127, 127, 66, 69, 65, 77, 26, 10, 1, 15, 0, 0, 4, 0, 20", TestUtil.toString(FormatHeader.create(1024, false, false)));
+	}
+
+	@Test
+	public void read_createdHeader() throws Exception {
+		FormatHeader header = FormatHeader.read(FormatHeader.create(1024, true, false), 0, FormatHeader.LENGTH);
+
+		assertEquals(FormatHeader.LENGTH, header.getHeaderLength());
+		assertEquals(1024, header.getBlockLength());
+		assertTrue(header.isCompact());
+	}
+
+	@Test
+	public void read_partialBlocks() throws Exception {
+		assertTrue(FormatHeader.read(FormatHeader.create(1024, false, true), 0, FormatHeader.LENGTH).hasPartialBlocks());
+		assertFalse(FormatHeader.read(FormatHeader.create(1024, false, false), 0, FormatHeader.LENGTH).hasPartialBlocks());
+	}
+
+	@Test
+	public void read_noHeader() throws Exception {
+		assertNull(FormatHeader.read(new byte[0], 0, 0));
+		assertNull(FormatHeader.read(FormatHeader.create(1024, false, false), 0, FormatHeader.LENGTH - 1));
+		//: unknown version
+		assertNull(FormatHeader.read(changeByte(FormatHeader.create(1024, false, false), 8, 2), 0, FormatHeader.LENGTH));
+		//: unknown flags
+		assertNull(FormatHeader.read(changeByte(FormatHeader.create(1024, false, false), 10, 4), 0, FormatHeader.LENGTH));
+		//: header length larger than the data
+		assertNull(FormatHeader.read(changeByte(FormatHeader.create(1024, false, false), 9, FormatHeader.LENGTH + 1), 0, FormatHeader.LENGTH));
+		//: wrong check byte
+		byte[] wrongCheckByte = FormatHeader.create(1024, false, false);
+		wrongCheckByte[FormatHeader.LENGTH - 1] ++;
+		assertNull(FormatHeader.read(wrongCheckByte, 0, FormatHeader.LENGTH));
+		//: block length changed without updating the check byte
+		byte[] changedBlockLength = FormatHeader.create(1024, false, false);
+		changedBlockLength[13] = 1;
+		assertNull(FormatHeader.read(changedBlockLength, 0, FormatHeader.LENGTH));
+		//: data length of a block without header
+		assertNull(FormatHeader.read(changeByte(FormatHeader.create(1024, false, false), 0, -128), 0, FormatHeader.LENGTH));
+		//: first block of data without header that contains 65535 bytes
+		byte[] legacyData = TestUtil.byteArrayFromRange(0, FormatHeader.LENGTH - 1);
+		legacyData[0] = 127;
+		legacyData[1] = 127;
+		assertNull(FormatHeader.read(legacyData, 0, FormatHeader.LENGTH));
+	}
+
+	@Test
+	public void readStream_noHeaderPushesBack() throws Exception {
+		byte[] data = TestUtil.byteArrayFromRange(0, 9);
+		PushbackInputStream input = new PushbackInputStream(new ByteArrayInputStream(data), FormatHeader.LENGTH);
+
+		assertNull(FormatHeader.read(input));
+		assertEquals(TestUtil.toString(data), TestUtil.toString(BeamUtil.readAllBytes(input)));
+	}
+
+	@Test
+	public void readStream_skipsLongerHeader() throws Exception {
+		byte[] data = new byte[FormatHeader.LENGTH + 4];
+		System.arraycopy(changeByte(FormatHeader.create(32, false, false), 9, FormatHeader.LENGTH + 2), 0, data, 0, FormatHeader.LENGTH);
+		data[FormatHeader.LENGTH] = 99;
+		data[FormatHeader.LENGTH + 1] = 99;
+		data[FormatHeader.LENGTH + 2] = 5;
+		data[FormatHeader.LENGTH + 3] = 6;
+		PushbackInputStream input = new PushbackInputStream(new ByteArrayInputStream(data), FormatHeader.LENGTH);
+
+		FormatHeader header = FormatHeader.read(input);
+		assertEquals(FormatHeader.LENGTH + 2, header.getHeaderLength());
+		assertEquals(32, header.getBlockLength());
+		assertFalse(header.isCompact());
+		assertEquals("5, 6", TestUtil.toString(BeamUtil.readAllBytes(input)));
+	}
+
+	/**
+	 * sets the byte at the position and updates the check byte, so only the changed field makes the header invalid
+	 */
+	private byte[] changeByte(byte[] header, int position, int value) {
+		header[position] = (byte)value;
+		header[FormatHeader.LENGTH - 1] = FormatHeader.getCheckByte(header, 0);
+		return header;
+	}
+}
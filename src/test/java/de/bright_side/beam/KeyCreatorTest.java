@@ -72,6 +72,79 @@ public class KeyCreatorTest {
 		assertEquals(evenBytesLenght * oddBytesLenght * iterationsOfEvenAndOddBytes * password.length * iterationsOfApplyPassword, result.length);
 	}
 	
+	@Test
+	public void createKeyStream_startAtDigitSumAndWrap() {
+		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
+		byte[] result = new KeyCreator().createKeyStream(key, 6, 7);
+		
+		assertEquals(TestUtil.bytesToString(2, 3, 0, 1, 2, 3, 0), TestUtil.toString(result));
+	}
+	
+	@Test
+	public void createKeyStream_keyLongerThanBlock() {
+		byte[] key = TestUtil.byteArray(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+		byte[] result = new KeyCreator().createKeyStream(key, 1, 4);
+		
+		assertEquals(TestUtil.bytesToString(1, 2, 3, 4), TestUtil.toString(result));
+	}
+	
+	@Test
+	public void createKeyStreamInPlainOrder_normal() {
+		byte[] keyStream = TestUtil.byteArray(10, 11, 12, 13);
+		int[] inversePosSwitchTable = TestUtil.intArray(2, 0, 3, 1);
+		byte[] result = new KeyCreator().createKeyStreamInPlainOrder(keyStream, inversePosSwitchTable);
+		
+		assertEquals(TestUtil.bytesToString(12, 10, 13, 11), TestUtil.toString(result));
+	}
+	
+	@Test
+	public void createKeyBytes_sameAsCreate() {
+		KeyCreator keyCreator = new KeyCreator();
+		for (int passwordLength = 2; passwordLength <= 13; passwordLength++) {
+			byte[] password = new byte[passwordLength];
+			for (int i = 0; i < passwordLength; i++) {
+				password[i] = (byte)(i * 37 - 100);
+			}
+			byte[] key = keyCreator.create(password);
+			
+			assertEquals(key.length, keyCreator.getKeyLength(password));
+			assertEquals(TestUtil.toString(key), TestUtil.toString(keyCreator.createKeyBytes(password, 0, key.length)));
+		}
+	}
+
+	@Test
+	public void createKeyBytes_wrapAround() {
+		KeyCreator keyCreator = new KeyCreator();
+		byte[] password = "thePassword".getBytes();
+		byte[] key = keyCreator.create(password);
+		int start = key.length * 3 - 5;
+		int length = 2 * key.length + 20;
+		byte[] expected = new byte[length];
+		for (int i = 0; i < length; i++) {
+			expected[i] = key[(start + i) % key.length];
+		}
+
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(keyCreator.createKeyBytes(password, start, length)));
+	}
+
+	@Test
+	public void createKeyBytes_sameAsKeyStream() {
+		KeyCreator keyCreator = new KeyCreator();
+		byte[] password = "another password that is longer".getBytes();
+		byte[] key = keyCreator.create(password);
+		int digitSum = BeamUtil.getDigitSum(password);
+
+		assertEquals(TestUtil.toString(keyCreator.createKeyStream(key, digitSum, 5000))
+				, TestUtil.toString(keyCreator.createKeyBytes(password, digitSum, 5000)));
+	}
+
+	@Test
+	public void getKeyLength_longPassword() {
+		byte[] password = new byte[2001];
+
+		assertEquals(4L * 1001 * 1000 * 2001, new KeyCreator().getKeyLength(password));
+	}
+
 	private void log(String message) {
 		if (ENABLE_LOGGING) {
 			System.out.println("KeyCreatorTest> " + message);
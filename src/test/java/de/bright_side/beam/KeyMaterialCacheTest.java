@@ -0,0 +1,116 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class KeyMaterialCacheTest {
+	private static final int BLOCK_LENGTH = 32;
+	private static final long WEIGHT = new KeyMaterial(password("a"), BLOCK_LENGTH).getWeight();
+
+	@After
+	public void disableSharedInstance() {
+		Beam.setKeyMaterialCacheSize(0);
+	}
+
+	@Test
+	public void get_samePassword() throws Exception {
+		KeyMaterialCache cache = new KeyMaterialCache(10 * WEIGHT);
+
+		KeyMaterial keyMaterial1 = cache.get(password("a"), BLOCK_LENGTH);
+		KeyMaterial keyMaterial2 = cache.get(password("a"), BLOCK_LENGTH);
+
+		assertSame(keyMaterial1, keyMaterial2);
+		assertEquals(1, cache.getSize());
+		assertEquals(WEIGHT, cache.getTotalWeight());
+	}
+
+	@Test
+	public void get_differentPasswordAndBlockLength() throws Exception {
+		KeyMaterialCache cache = new KeyMaterialCache(10 * WEIGHT);
+
+		KeyMaterial keyMaterial1 = cache.get(password("a"), BLOCK_LENGTH);
+		KeyMaterial keyMaterial2 = cache.get(password("b"), BLOCK_LENGTH);
+		KeyMaterial keyMaterial3 = cache.get(password("a"), BLOCK_LENGTH + 1);
+
+		assertNotSame(keyMaterial1, keyMaterial2);
+		assertNotSame(keyMaterial1, keyMaterial3);
+		assertEquals(3, cache.getSize());
+	}
+
+	@Test
+	public void get_evictLeastRecentlyUsed() throws Exception {
+		KeyMaterialCache cache = new KeyMaterialCache(2 * WEIGHT + WEIGHT / 2);
+		KeyMaterial keyMaterialA = cache.get(password("a"), BLOCK_LENGTH);
+		KeyMaterial keyMaterialB = cache.get(password("b"), BLOCK_LENGTH);
+		cache.get(password("a"), BLOCK_LENGTH);
+
+		KeyMaterial keyMaterialC = cache.get(password("c"), BLOCK_LENGTH);
+
+		assertEquals(2, cache.getSize());
+		assertEquals(keyMaterialA.getWeight() + keyMaterialC.getWeight(), cache.getTotalWeight());
+		assertSame(keyMaterialA, cache.get(password("a"), BLOCK_LENGTH));
+		assertNotSame(keyMaterialB, cache.get(password("b"), BLOCK_LENGTH));
+	}
+
+	@Test
+	public void get_evictSeveralEntriesInAccessOrder() throws Exception {
+		KeyMaterialCache cache = new KeyMaterialCache(3 * WEIGHT);
+		KeyMaterial keyMaterialA = cache.get(password("a"), BLOCK_LENGTH);
+		cache.get(password("b"), BLOCK_LENGTH);
+		cache.get(password("c"), BLOCK_LENGTH);
+		cache.get(password("a"), BLOCK_LENGTH);
+
+		cache.setMaximumWeight(WEIGHT + WEIGHT / 2);
+
+		assertEquals(1, cache.getSize());
+		assertEquals(WEIGHT, cache.getTotalWeight());
+		assertSame(keyMaterialA, cache.get(password("a"), BLOCK_LENGTH));
+	}
+
+	@Test
+	public void get_entryHeavierThanMaximum() throws Exception {
+		KeyMaterialCache cache = new KeyMaterialCache(WEIGHT - 1);
+
+		cache.get(password("a"), BLOCK_LENGTH);
+
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getTotalWeight());
+	}
+
+	@Test
+	public void setMaximumWeight_disable() throws Exception {
+		KeyMaterialCache cache = new KeyMaterialCache(10 * WEIGHT);
+		cache.get(password("a"), BLOCK_LENGTH);
+		cache.get(password("b"), BLOCK_LENGTH);
+
+		cache.setMaximumWeight(0);
+
+		assertFalse(cache.isEnabled());
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getTotalWeight());
+	}
+
+	@Test
+	public void sharedInstance_usedByBeam() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 100);
+		Beam.setKeyMaterialCacheSize(10 * WEIGHT);
+		Beam beam1 = new Beam("thePassword", BLOCK_LENGTH);
+		Beam beam2 = new Beam("thePassword", BLOCK_LENGTH);
+
+		byte[] decrypted = beam2.decrypt(beam1.encrypt(plainBytes));
+
+		assertTrue(KeyMaterialCache.getSharedInstance().isEnabled());
+		assertEquals(1, KeyMaterialCache.getSharedInstance().getSize());
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(decrypted));
+	}
+
+	private static byte[] password(String prefix) {
+		return (prefix + "Password").getBytes();
+	}
+}
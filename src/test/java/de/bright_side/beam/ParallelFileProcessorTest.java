@@ -0,0 +1,114 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelFileProcessorTest {
+	private static final String PASSWORD = "thePassword";
+	private static final int BLOCK_LENGTH = 32;
+	private static final int CHUNK_LENGTH = 3 * BLOCK_LENGTH;
+	private static final int THREAD_COUNT = 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void encrypt_sameResultAsEncryptBytes() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 1000);
+		byte[] fakeRandomNumbers = TestUtil.byteArray(1, 2, 3, 4, 5);
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		byte[] expected = beam.encrypt(plainBytes);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		Path input = writeFile("plain", plainBytes);
+		Path output = folder.getRoot().toPath().resolve("encrypted");
+
+		new ParallelFileProcessor(beam, THREAD_COUNT, CHUNK_LENGTH).encrypt(input, output);
+
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(Files.readAllBytes(output)));
+	}
+
+	@Test
+	public void encryptAndDecrypt_fullBlocksOnly() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 32 * 20 - 1);
+		assertEncryptAndDecrypt(plainBytes);
+	}
+
+	@Test
+	public void encryptAndDecrypt_emptyFile() throws Exception {
+		assertEncryptAndDecrypt(new byte[0]);
+	}
+
+	@Test
+	public void encryptAndDecrypt_overwriteLongerFile() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 100);
+		Path input = writeFile("plain", plainBytes);
+		Path encrypted = writeFile("encrypted", new byte[5000]);
+		Path decrypted = writeFile("decrypted", new byte[5000]);
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		ParallelFileProcessor processor = new ParallelFileProcessor(beam, THREAD_COUNT, CHUNK_LENGTH);
+
+		processor.encrypt(input, encrypted);
+		processor.decrypt(encrypted, decrypted);
+
+		assertEquals(beam.getEncryptedLength(plainBytes.length), Files.size(encrypted));
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(Files.readAllBytes(decrypted)));
+	}
+
+	@Test
+	public void decrypt_concatenatedFiles() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] part1 = TestUtil.byteArrayFromRange(0, 40);
+		byte[] part2 = TestUtil.byteArrayFromRange(100, 600);
+		byte[] encrypted1 = beam.encrypt(part1);
+		byte[] encrypted2 = beam.encrypt(part2);
+		byte[] concatenated = new byte[encrypted1.length + encrypted2.length];
+		System.arraycopy(encrypted1, 0, concatenated, 0, encrypted1.length);
+		System.arraycopy(encrypted2, 0, concatenated, encrypted1.length, encrypted2.length);
+		byte[] expected = new byte[part1.length + part2.length];
+		System.arraycopy(part1, 0, expected, 0, part1.length);
+		System.arraycopy(part2, 0, expected, part1.length, part2.length);
+		Path encrypted = writeFile("encrypted", concatenated);
+		Path decrypted = folder.getRoot().toPath().resolve("decrypted");
+
+		new ParallelFileProcessor(beam, THREAD_COUNT, CHUNK_LENGTH).decrypt(encrypted, decrypted);
+
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(Files.readAllBytes(decrypted)));
+	}
+
+	@Test(expected = Exception.class)
+	public void decrypt_corruptLength() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, 100));
+		byte[] corrupt = new byte[encryptedBytes.length - 1];
+		System.arraycopy(encryptedBytes, 0, corrupt, 0, corrupt.length);
+		Path encrypted = writeFile("encrypted", corrupt);
+
+		new ParallelFileProcessor(beam, THREAD_COUNT, CHUNK_LENGTH).decrypt(encrypted, folder.getRoot().toPath().resolve("decrypted"));
+	}
+
+	private void assertEncryptAndDecrypt(byte[] plainBytes) throws Exception {
+		Path input = writeFile("plain", plainBytes);
+		Path encrypted = folder.getRoot().toPath().resolve("encrypted");
+		Path decrypted = folder.getRoot().toPath().resolve("decrypted");
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+
+		new ParallelFileProcessor(beam, THREAD_COUNT, CHUNK_LENGTH).encrypt(input, encrypted);
+		new ParallelFileProcessor(new Beam(PASSWORD, BLOCK_LENGTH), THREAD_COUNT, CHUNK_LENGTH).decrypt(encrypted, decrypted);
+
+		assertEquals(beam.getEncryptedLength(plainBytes.length), Files.size(encrypted));
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(Files.readAllBytes(decrypted)));
+	}
+
+	private Path writeFile(String name, byte[] data) throws Exception {
+		Path result = folder.getRoot().toPath().resolve(name);
+		Files.write(result, data);
+		return result;
+	}
+}
@@ -0,0 +1,224 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ParallelStreamProcessorTest {
+	private static final String PASSWORD = "thePassword";
+	private static final int BLOCK_LENGTH = 32;
+	private static final int THREAD_COUNT = 3;
+	private static final int MAXIMUM_BLOCKS_IN_FLIGHT = 7;
+
+	private static class RecordingListener implements BeamProgressListener {
+		private List<long[]> amounts = new ArrayList<>();
+		private long[] finishedAmounts = null;
+
+		@Override
+		public void bytesProcessed(long amountPlain, long amountEncrypted) {
+			amounts.add(new long[] {amountPlain, amountEncrypted});
+		}
+
+		@Override
+		public void finishedSuccessfully(long amountPlain, long amountEncrypted) throws IOException {
+			finishedAmounts = new long[] {amountPlain, amountEncrypted};
+		}
+	}
+
+	/**
+	 * counts the blocks that have been read and records the maximum number of blocks that were read but not yet reported as written by the listener
+	 */
+	private static class InFlightCountingInputStream extends ByteArrayInputStream {
+		private int blockLength;
+		private CountingListener listener;
+		private long bytesRead = 0;
+		private long maximumBlocksInFlight = 0;
+
+		public InFlightCountingInputStream(byte[] data, int blockLength, CountingListener listener) {
+			super(data);
+			this.blockLength = blockLength;
+			this.listener = listener;
+		}
+
+		@Override
+		public synchronized int read(byte[] data, int offset, int length) {
+			int result = super.read(data, offset, length);
+			if (result > 0) {
+				bytesRead += result;
+				long blocksRead = (bytesRead + blockLength - 1) / blockLength;
+				maximumBlocksInFlight = Math.max(maximumBlocksInFlight, blocksRead - listener.blocksWritten.get());
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * counts the written blocks and writes slowly so that the reader fills the queue
+	 */
+	private static class CountingListener implements BeamProgressListener {
+		private AtomicLong blocksWritten = new AtomicLong(0);
+
+		@Override
+		public void bytesProcessed(long amountPlain, long amountEncrypted) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			blocksWritten.incrementAndGet();
+		}
+
+		@Override
+		public void finishedSuccessfully(long amountPlain, long amountEncrypted) throws IOException {
+		}
+	}
+
+	@Test
+	public void encrypt_sameResultAsSequential() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 1000);
+		byte[] fakeRandomNumbers = TestUtil.byteArray(1, 2, 3, 4, 5);
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		byte[] expected = beam.encrypt(plainBytes);
+		beam.setRandomNumberGenerator(new FakeRandomNumberGenerator(fakeRandomNumbers));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		new ParallelStreamProcessor(beam, THREAD_COUNT, MAXIMUM_BLOCKS_IN_FLIGHT).encrypt(new ByteArrayInputStream(plainBytes), output, null);
+
+		assertEquals(TestUtil.toString(expected), TestUtil.toString(output.toByteArray()));
+	}
+
+	@Test
+	public void encryptAndDecrypt_listenerSameAsSequential() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 1000);
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		RecordingListener expectedEncryptListener = new RecordingListener();
+		RecordingListener expectedDecryptListener = new RecordingListener();
+		ByteArrayOutputStream sequentialOutput = new ByteArrayOutputStream();
+		beam.encrypt(new ByteArrayInputStream(plainBytes), sequentialOutput, expectedEncryptListener);
+		beam.decrypt(new ByteArrayInputStream(sequentialOutput.toByteArray()), new ByteArrayOutputStream(), expectedDecryptListener);
+		RecordingListener encryptListener = new RecordingListener();
+		RecordingListener decryptListener = new RecordingListener();
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+		ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+		ParallelStreamProcessor processor = new ParallelStreamProcessor(beam, THREAD_COUNT, MAXIMUM_BLOCKS_IN_FLIGHT);
+
+		processor.encrypt(new ByteArrayInputStream(plainBytes), encrypted, encryptListener);
+		processor.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, decryptListener);
+
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(decrypted.toByteArray()));
+		assertSameAmounts(expectedEncryptListener, encryptListener);
+		assertSameAmounts(expectedDecryptListener, decryptListener);
+	}
+
+	@Test
+	public void decrypt_concatenatedData() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] part1 = TestUtil.byteArrayFromRange(0, 40);
+		byte[] part2 = TestUtil.byteArrayFromRange(100, 600);
+		ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+		concatenated.write(beam.encrypt(part1));
+		concatenated.write(beam.encrypt(part2));
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(part1);
+		expected.write(part2);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		new ParallelStreamProcessor(beam, THREAD_COUNT, MAXIMUM_BLOCKS_IN_FLIGHT).decrypt(new ByteArrayInputStream(concatenated.toByteArray()), output, null);
+
+		assertEquals(TestUtil.toString(expected.toByteArray()), TestUtil.toString(output.toByteArray()));
+	}
+
+	@Test
+	public void encryptAndDecrypt_emptyStream() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		ParallelStreamProcessor processor = new ParallelStreamProcessor(beam, THREAD_COUNT, MAXIMUM_BLOCKS_IN_FLIGHT);
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+		ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+
+		processor.encrypt(new ByteArrayInputStream(new byte[0]), encrypted, null);
+		processor.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, null);
+
+		assertEquals(0, encrypted.size());
+		assertEquals(0, decrypted.size());
+	}
+
+	@Test(expected = Exception.class)
+	public void decrypt_corruptLength() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, 1000));
+
+		new ParallelStreamProcessor(beam, THREAD_COUNT, MAXIMUM_BLOCKS_IN_FLIGHT).decrypt(new ByteArrayInputStream(encryptedBytes, 0, encryptedBytes.length - 1)
+				, new ByteArrayOutputStream(), null);
+	}
+
+	@Test(expected = Exception.class)
+	public void decrypt_corruptHeader() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, 1000));
+		encryptedBytes[(BLOCK_LENGTH + 2) * 20] = 127;
+
+		new ParallelStreamProcessor(beam, THREAD_COUNT, MAXIMUM_BLOCKS_IN_FLIGHT).decrypt(new ByteArrayInputStream(encryptedBytes), new ByteArrayOutputStream(), null);
+	}
+
+	@Test
+	public void encryptAndDecrypt_enabledInBeam() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 5000);
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		beam.setParallelStreamProcessing(true);
+		beam.setThreadCount(THREAD_COUNT);
+		beam.setMaximumBlocksInFlight(MAXIMUM_BLOCKS_IN_FLIGHT);
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+		ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+
+		beam.encrypt(new ByteArrayInputStream(plainBytes), encrypted, null);
+		beam.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, null);
+
+		assertEquals(TestUtil.toString(plainBytes), TestUtil.toString(decrypted.toByteArray()));
+	}
+
+	@Test
+	public void encrypt_maximumBlocksInFlightNotExceeded() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, BLOCK_LENGTH * 200 - 1);
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		CountingListener listener = new CountingListener();
+		InFlightCountingInputStream input = new InFlightCountingInputStream(plainBytes, BLOCK_LENGTH, listener);
+
+		new ParallelStreamProcessor(beam, THREAD_COUNT, MAXIMUM_BLOCKS_IN_FLIGHT).encrypt(input, new ByteArrayOutputStream(), listener);
+
+		assertEquals(200, listener.blocksWritten.get());
+		assertTrue("blocks in flight: " + input.maximumBlocksInFlight, input.maximumBlocksInFlight <= MAXIMUM_BLOCKS_IN_FLIGHT);
+	}
+
+	@Test
+	public void decrypt_maximumBlocksInFlightNotExceeded() throws Exception {
+		Beam beam = new Beam(PASSWORD, BLOCK_LENGTH);
+		byte[] encryptedBytes = beam.encrypt(TestUtil.byteArrayFromRange(0, BLOCK_LENGTH * 200 - 1));
+		CountingListener listener = new CountingListener();
+		InFlightCountingInputStream input = new InFlightCountingInputStream(encryptedBytes, BLOCK_LENGTH + Beam.LENGTH_OF_BLOCK_SIZE_BYTES, listener);
+
+		new ParallelStreamProcessor(beam, THREAD_COUNT, MAXIMUM_BLOCKS_IN_FLIGHT).decrypt(input, new ByteArrayOutputStream(), listener);
+
+		assertEquals(200, listener.blocksWritten.get());
+		assertTrue("blocks in flight: " + input.maximumBlocksInFlight, input.maximumBlocksInFlight <= MAXIMUM_BLOCKS_IN_FLIGHT);
+	}
+
+	private void assertSameAmounts(RecordingListener expected, RecordingListener result) {
+		assertEquals(expected.amounts.size(), result.amounts.size());
+		for (int i = 0; i < expected.amounts.size(); i++) {
+			assertEquals(expected.amounts.get(i)[0], result.amounts.get(i)[0]);
+			assertEquals(expected.amounts.get(i)[1], result.amounts.get(i)[1]);
+		}
+		assertTrue(result.finishedAmounts != null);
+		assertEquals(expected.finishedAmounts[0], result.finishedAmounts[0]);
+		assertEquals(expected.finishedAmounts[1], result.finishedAmounts[1]);
+	}
+}
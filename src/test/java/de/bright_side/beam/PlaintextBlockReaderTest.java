@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 
 import org.junit.Test;
@@ -18,7 +19,7 @@ public class PlaintextBlockReaderTest {
 		Block result = reader.readNextBlock();
 		
 		assertEquals(5, result.getLength());
-		assertEquals(TestUtil.bytesToString(0, 10, 20, 30, 40), TestUtil.toString(result.getData()));
+		assertEquals(TestUtil.bytesToString(0, 10, 20, 30, 40), TestUtil.toString(getBlockBytes(result, 5)));
 	}
 	
 	@Test
@@ -29,7 +30,7 @@ public class PlaintextBlockReaderTest {
 		Block result = reader.readNextBlock();
 		
 		assertEquals(5, result.getLength());
-		assertEquals(TestUtil.bytesToString(0, 10, 20, 30, 40), TestUtil.toString(result.getData()));
+		assertEquals(TestUtil.bytesToString(0, 10, 20, 30, 40), TestUtil.toString(getBlockBytes(result, 5)));
 	}
 	
 	@Test
@@ -49,7 +50,28 @@ public class PlaintextBlockReaderTest {
 		
 		Block result = reader.readNextBlock();
 		assertEquals(2, result.getLength());
-		assertEquals(TestUtil.bytesToString(0, 10, 90, 91, 92), TestUtil.toString(result.getData()));
+		assertEquals(TestUtil.bytesToString(0, 10, 90, 91, 92), TestUtil.toString(getBlockBytes(result, 5)));
+	}
+
+	@Test
+	public void readNextBlock_manyBlocksWithSmallReadAhead() throws Exception {
+		byte[] plainBytes = TestUtil.byteArrayFromRange(0, 22);
+		PlaintextBlockReader reader = new PlaintextBlockReader(new ByteArrayInputStream(plainBytes), 5, new FakeRandomNumberGenerator(TestUtil.byteArray(90, 91, 92)), 12);
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+		Block block = reader.readNextBlock();
+		while (block != null) {
+			result.write(getBlockBytes(block, 5));
+			block = reader.readNextBlock();
+		}
+
+		assertEquals(TestUtil.bytesToString(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 90, 91)
+				, TestUtil.toString(result.toByteArray()));
+	}
+
+	private byte[] getBlockBytes(Block block, int blockLength) {
+		byte[] result = new byte[blockLength];
+		System.arraycopy(block.getData(), block.getOffset(), result, 0, blockLength);
+		return result;
 	}
-	
 }
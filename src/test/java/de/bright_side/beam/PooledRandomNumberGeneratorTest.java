@@ -0,0 +1,98 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PooledRandomNumberGeneratorTest {
+
+	@Test
+	public void fill_servesSourceBytesInOrderAcrossRefills() throws Exception {
+		FakeRandomNumberGenerator source = new FakeRandomNumberGenerator(TestUtil.byteArrayFromRange(0, 99));
+		PooledRandomNumberGenerator generator = new PooledRandomNumberGenerator(source, 8);
+
+		byte[] result = new byte[30];
+		generator.fill(result, 2, 3);
+		generator.fill(result, 5, 20);
+		System.arraycopy(generator.getRandomBytes(5), 0, result, 25, 5);
+
+		assertArrayEquals(TestUtil.byteArrayFromRange(0, 27), Arrays.copyOfRange(result, 2, 30));
+	}
+
+	@Test
+	public void fill_sourceIsCalledOncePerPool() throws Exception {
+		AtomicInteger fillCalls = new AtomicInteger();
+		RandomNumberGenerator source = new RandomNumberGenerator() {
+			@Override
+			public byte[] getRandomBytes(int length) {
+				throw new IllegalStateException("getRandomBytes should not be called");
+			}
+
+			@Override
+			public void fill(byte[] dst, int off, int len) {
+				fillCalls.incrementAndGet();
+			}
+		};
+		PooledRandomNumberGenerator generator = new PooledRandomNumberGenerator(source, 1024);
+
+		byte[] result = new byte[10];
+		for (int i = 0; i < 200; i++) {
+			generator.fill(result, 0, result.length);
+		}
+		assertEquals(2, fillCalls.get());
+	}
+
+	@Test
+	public void fill_eachThreadHasOwnPool() throws Exception {
+		FakeRandomNumberGenerator source = new FakeRandomNumberGenerator(TestUtil.byteArrayFromRange(0, 15));
+		PooledRandomNumberGenerator generator = new PooledRandomNumberGenerator(source, 8);
+
+		byte[] mainThreadBytes = generator.getRandomBytes(2);
+		byte[][] otherThreadBytes = new byte[1][];
+		Thread thread = new Thread(() -> otherThreadBytes[0] = generator.getRandomBytes(2));
+		thread.start();
+		thread.join();
+
+		//: the other thread gets a new pool which is filled with the next bytes of the source
+		assertArrayEquals(new byte[] {0, 1}, mainThreadBytes);
+		assertArrayEquals(new byte[] {8, 9}, otherThreadBytes[0]);
+		assertArrayEquals(new byte[] {2, 3}, generator.getRandomBytes(2));
+	}
+
+	@Test
+	public void encrypt_withPooledGenerator() throws Exception {
+		Beam beam = new Beam("password", 128);
+		beam.setRandomNumberGenerator(new PooledRandomNumberGenerator(new DefaultRandomNumberGenerator(), 100));
+		byte[] data = TestUtil.byteArrayFromRange(0, 199);
+
+		byte[] encrypted = beam.encrypt(data);
+		assertNotNull(encrypted);
+		assertArrayEquals(data, beam.decrypt(encrypted));
+	}
+
+	@Test(expected = Exception.class)
+	public void create_invalidPoolLength() throws Exception {
+		new PooledRandomNumberGenerator(new DefaultRandomNumberGenerator(), 0);
+	}
+
+	@Test
+	public void fill_defaultGeneratorWritesOnlyRange() throws Exception {
+		byte[] result = new byte[100];
+		new DefaultRandomNumberGenerator().fill(result, 10, 80);
+		boolean nonZeroFound = false;
+		for (int i = 0; i < result.length; i++) {
+			if ((i < 10) || (i >= 90)) {
+				assertEquals(0, result[i]);
+			} else if (result[i] != 0) {
+				nonZeroFound = true;
+			}
+		}
+		assertTrue(nonZeroFound);
+	}
+}
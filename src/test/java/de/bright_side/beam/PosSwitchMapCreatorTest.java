@@ -1,15 +1,19 @@
 package de.bright_side.beam;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 
 public class PosSwitchMapCreatorTest {
 	private static final boolean ENABLE_LOGGING = false;
+	private static final long RANDOM_SEED = 4711;
 	
 	@Test
 	public void createList_startWith1() {
@@ -27,30 +31,24 @@ public class PosSwitchMapCreatorTest {
 	public void create_normal() {
 		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
 		final int blockLength = 10;
-		Map<Integer, Integer> result = new PosSwitchMapCreator().create(key, blockLength);
+		int[] result = new PosSwitchMapCreator().create(key, blockLength);
 		
-		log("create_normal: result = " + result);
+		log("create_normal: result = " + TestUtil.intsToString(result));
 		
-		assertEquals(blockLength, result.size());
-		for (int i = 0; i < blockLength; i++) {
-			assertTrue(result.containsKey(Integer.valueOf(i)));
-			assertTrue(result.containsValue(Integer.valueOf(i)));
-		}
+		assertEquals(blockLength, result.length);
+		assertPermutation(result);
 	}
 	
 	@Test
 	public void create_negativeValues() {
 		byte[] key = TestUtil.byteArray(-5, -99, -12, -3);
 		final int blockLength = 10;
-		Map<Integer, Integer> result = new PosSwitchMapCreator().create(key, blockLength);
+		int[] result = new PosSwitchMapCreator().create(key, blockLength);
 		
-		log("create_negativeValues: result = " + result);
+		log("create_negativeValues: result = " + TestUtil.intsToString(result));
 		
-		assertEquals(blockLength, result.size());
-		for (int i = 0; i < blockLength; i++) {
-			assertTrue(result.containsKey(Integer.valueOf(i)));
-			assertTrue(result.containsValue(Integer.valueOf(i)));
-		}
+		assertEquals(blockLength, result.length);
+		assertPermutation(result);
 	}
 	
 	@Test
@@ -64,17 +62,93 @@ public class PosSwitchMapCreatorTest {
 		}
 		
 		final int blockLength = length;
-		Map<Integer, Integer> result = new PosSwitchMapCreator().create(key, blockLength);
+		int[] result = new PosSwitchMapCreator().create(key, blockLength);
+		
+		log("create_negativeValues: result = " + TestUtil.intsToString(result));
 		
-		log("create_negativeValues: result = " + result);
+		assertEquals(blockLength, result.length);
+		assertPermutation(result);
+	}
+	
+	@Test
+	public void create_knownTable() {
+		byte[] key = TestUtil.byteArray(0, 1, 2, 3);
+		int[] result = new PosSwitchMapCreator().create(key, 6);
 		
-		assertEquals(blockLength, result.size());
+		//: remaining positions 0,1,2,3,4,5: index 128 % 6 = 2, remaining 0,1,3,4,5: index 129 % 5 = 4, remaining 0,1,3,4: index 130 % 4 = 2, ...
+		assertEquals(TestUtil.intsToString(2, 5, 3, 4, 0, 1), TestUtil.intsToString(result));
+	}
+	
+	@Test
+	public void createInverse_normal() {
+		byte[] key = TestUtil.byteArray(-5, -99, -12, -3);
+		final int blockLength = 100;
+		PosSwitchMapCreator creator = new PosSwitchMapCreator();
+		int[] table = creator.create(key, blockLength);
+		int[] result = creator.createInverse(table);
+		
+		assertPermutation(result);
 		for (int i = 0; i < blockLength; i++) {
-			assertTrue(result.containsKey(Integer.valueOf(i)));
-			assertTrue(result.containsValue(Integer.valueOf(i)));
+			assertEquals(i, result[table[i]]);
 		}
 	}
 	
+	@Test
+	public void create_sameAsListVersionSmallBlockLengths() {
+		Random random = new Random(RANDOM_SEED);
+		PosSwitchMapCreator creator = new PosSwitchMapCreator();
+		for (int blockLength = 1; blockLength <= 300; blockLength++) {
+			for (int keyLength: new int[] {1, 2, 7, 64, 1000}) {
+				byte[] key = new byte[keyLength];
+				random.nextBytes(key);
+				assertEquals("blockLength = " + blockLength + ", keyLength = " + keyLength
+						, TestUtil.intsToString(creator.createWithList(key, blockLength)), TestUtil.intsToString(creator.create(key, blockLength)));
+			}
+		}
+	}
+	
+	@Test
+	public void create_sameAsListVersionLargeBlockLengths() {
+		PosSwitchMapCreator creator = new PosSwitchMapCreator();
+		byte[] shortKey = new KeyCreator().create(TestUtil.byteArray(1, 2, 3, 4, 5, 6, 7, 8));
+		byte[] longKey = new KeyCreator().create("a somewhat longer password".getBytes());
+		for (int blockLength: new int[] {1024, 4095, 4096, 4097, 65535, 65536}) {
+			for (byte[] key: Arrays.asList(shortKey, longKey)) {
+				assertArrayEquals("blockLength = " + blockLength + ", keyLength = " + key.length
+						, creator.createWithList(key, blockLength), creator.create(key, blockLength));
+			}
+		}
+	}
+
+	@Test
+	public void create_sameAsListVersionExtremeKeyValues() {
+		PosSwitchMapCreator creator = new PosSwitchMapCreator();
+		for (byte keyValue: TestUtil.byteArray(Byte.MIN_VALUE, -1, 0, 1, Byte.MAX_VALUE)) {
+			byte[] key = TestUtil.byteArray(keyValue);
+			for (int blockLength: new int[] {1, 32, 255, 256, 257, 1024}) {
+				assertArrayEquals("blockLength = " + blockLength + ", keyValue = " + keyValue
+						, creator.createWithList(key, blockLength), creator.create(key, blockLength));
+			}
+		}
+	}
+	
+	@Test
+	public void createCycleStarts_normal() {
+		int[] table = TestUtil.intArray(1, 0, 2, 5, 3, 4);
+		int[] result = new PosSwitchMapCreator().createCycleStarts(table);
+		
+		assertEquals(TestUtil.intsToString(0, 2, 3), TestUtil.intsToString(result));
+	}
+	
+	private void assertPermutation(int[] table) {
+		boolean[] found = new boolean[table.length];
+		for (int i: table) {
+			assertTrue(i >= 0 && i < table.length);
+			assertFalse(found[i]);
+			found[i] = true;
+		}
+	}
+
 	private void log(String message) {
 		if (ENABLE_LOGGING) {
 			System.out.println("PosSwitchMapCreatorTest> " + message);
@@ -0,0 +1,66 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+public class ReadAheadBufferTest {
+
+	@Test
+	public void ensureAvailable_readsAheadAndMovesRemainingBytes() throws Exception {
+		ReadAheadBuffer buffer = new ReadAheadBuffer(new ByteArrayInputStream(TestUtil.byteArrayFromRange(0, 9)), 4, 8);
+
+		assertTrue(buffer.ensureAvailable(4));
+		assertEquals(8, buffer.getAvailable());
+		buffer.consume(6);
+		assertTrue(buffer.ensureAvailable(4));
+		assertEquals(0, buffer.getPosition());
+		assertEquals(4, buffer.getAvailable());
+		assertEquals(6, buffer.getBuffer()[0]);
+		assertEquals(9, buffer.getBuffer()[3]);
+		buffer.consume(3);
+		assertFalse(buffer.ensureAvailable(2));
+		assertEquals(1, buffer.getAvailable());
+	}
+
+	@Test
+	public void ensureAvailable_growsUpToReadAheadLength() throws Exception {
+		byte[] data = TestUtil.byteArrayFromRange(0, 99);
+		ReadAheadBuffer buffer = new ReadAheadBuffer(new ByteArrayInputStream(data), 4, 33);
+
+		assertTrue(buffer.ensureAvailable(4));
+		assertEquals(16, buffer.getBuffer().length);
+		int expectedValue = 0;
+		while (buffer.ensureAvailable(4)) {
+			assertEquals((byte)expectedValue, buffer.getBuffer()[buffer.getPosition()]);
+			buffer.consume(4);
+			expectedValue += 4;
+		}
+		assertEquals(data.length, expectedValue);
+		assertEquals(32, buffer.getBuffer().length);
+	}
+
+	@Test
+	public void ensureAvailable_shortDataDoesNotAllocateReadAheadLength() throws Exception {
+		ReadAheadBuffer buffer = new ReadAheadBuffer(new ByteArrayInputStream(TestUtil.byteArrayFromRange(0, 9)), 4, ReadAheadBuffer.DEFAULT_READ_AHEAD_LENGTH);
+
+		assertTrue(buffer.ensureAvailable(4));
+		assertEquals(10, buffer.getAvailable());
+		assertEquals(16, buffer.getBuffer().length);
+	}
+
+	@Test
+	public void skip_beyondBuffer() throws Exception {
+		ReadAheadBuffer buffer = new ReadAheadBuffer(new ByteArrayInputStream(TestUtil.byteArrayFromRange(0, 19)), 4, 4);
+
+		assertTrue(buffer.ensureAvailable(2));
+		assertEquals(10, buffer.skip(10));
+		assertTrue(buffer.ensureAvailable(1));
+		assertEquals(10, buffer.getBuffer()[buffer.getPosition()]);
+		assertEquals(10, buffer.skip(15));
+	}
+}
@@ -0,0 +1,74 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Base64;
+
+import org.junit.Test;
+
+public class TextCodecTest {
+
+	@Test
+	public void encode_hex() throws Exception {
+		byte[] data = TestUtil.byteArray(0, 1, -1, 127, -128, 74);
+
+		assertEquals(BeamUtil.byteArrayToHexString(data), new HexCodec().encodeToString(data));
+	}
+
+	@Test
+	public void encode_base64UrlSameAsJdk() throws Exception {
+		for (int length = 0; length < 10; length++) {
+			byte[] data = new byte[length];
+			for (int i = 0; i < length; i++) {
+				data[i] = (byte)(250 - i * 31);
+			}
+
+			String result = new Base64UrlCodec().encodeToString(data);
+
+			assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(data), result);
+			assertEquals(TestUtil.toString(data), TestUtil.toString(new Base64UrlCodec().decode(result)));
+		}
+	}
+
+	@Test
+	public void encode_z85Specification() throws Exception {
+		byte[] data = TestUtil.byteArray(0x86, 0x4F, 0xD2, 0x6F, 0xB5, 0x59, 0xF7, 0x5B);
+
+		assertEquals("HelloWorld", new Z85Codec().encodeToString(data));
+		assertEquals(TestUtil.toString(data), TestUtil.toString(new Z85Codec().decode("HelloWorld")));
+	}
+
+	@Test
+	public void encodeAndDecode_allEncodingsAndLengths() throws Exception {
+		for (BeamTextEncoding encoding: BeamTextEncoding.values()) {
+			TextCodec codec = encoding.getCodec();
+			for (int length = 0; length < 20; length++) {
+				byte[] data = new byte[length];
+				for (int i = 0; i < length; i++) {
+					data[i] = (byte)(255 - i * 13);
+				}
+
+				String result = codec.encodeToString(data);
+
+				assertEquals(codec.getEncodedLength(length), result.length());
+				assertEquals(encoding + ", length " + length, TestUtil.toString(data), TestUtil.toString(codec.decode(result)));
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void decode_z85InvalidLength() throws Exception {
+		new Z85Codec().decode("HelloW");
+	}
+
+	@Test(expected = IOException.class)
+	public void decode_z85Overflow() throws Exception {
+		new Z85Codec().decode("#####");
+	}
+
+	@Test(expected = IOException.class)
+	public void decode_base64IllegalCharacter() throws Exception {
+		new Base64UrlCodec().decode("AB+/");
+	}
+}
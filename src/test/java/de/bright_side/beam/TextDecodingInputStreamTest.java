@@ -0,0 +1,71 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class TextDecodingInputStreamTest {
+	private static final int END_OF_STREAM = -1;
+
+	/**
+	 * returns only one character per read call so that the characters of a group are read by different calls
+	 */
+	private static class OneCharReader extends StringReader {
+		public OneCharReader(String text) {
+			super(text);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(1, len));
+		}
+	}
+
+	@Test
+	public void read_hexSameAsHexStringToByteArray() throws Exception {
+		byte[] data = TestUtil.byteArrayFromRange(-128, 127);
+		TextDecodingInputStream stream = new TextDecodingInputStream(new StringReader(BeamUtil.byteArrayToHexString(data)), BeamTextEncoding.HEX.getCodec());
+
+		assertEquals(TestUtil.toString(data), TestUtil.toString(BeamUtil.readAllBytes(stream)));
+	}
+
+	@Test
+	public void read_hexOneCharPerRead() throws Exception {
+		TextDecodingInputStream stream = new TextDecodingInputStream(new OneCharReader("00ff7Fa0"), BeamTextEncoding.HEX.getCodec());
+
+		assertEquals(0, stream.read());
+		assertEquals(255, stream.read());
+		assertEquals(127, stream.read());
+		assertEquals(160, stream.read());
+		assertEquals(END_OF_STREAM, stream.read());
+	}
+
+	@Test
+	public void read_allEncodingsOneCharPerRead() throws Exception {
+		byte[] data = TestUtil.byteArrayFromRange(-128, 126);
+		for (BeamTextEncoding encoding: BeamTextEncoding.values()) {
+			String text = encoding.getCodec().encodeToString(data);
+			TextDecodingInputStream stream = new TextDecodingInputStream(new OneCharReader(text), encoding.getCodec());
+
+			assertEquals(TestUtil.toString(data), TestUtil.toString(BeamUtil.readAllBytes(stream)));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void read_hexOddLength() throws Exception {
+		BeamUtil.readAllBytes(new TextDecodingInputStream(new StringReader("00ff7"), BeamTextEncoding.HEX.getCodec()));
+	}
+
+	@Test(expected = IOException.class)
+	public void read_hexIllegalCharacter() throws Exception {
+		BeamUtil.readAllBytes(new TextDecodingInputStream(new StringReader("00fx"), BeamTextEncoding.HEX.getCodec()));
+	}
+
+	@Test(expected = IOException.class)
+	public void read_base64InvalidLength() throws Exception {
+		BeamUtil.readAllBytes(new TextDecodingInputStream(new StringReader("AAAAA"), BeamTextEncoding.BASE64_URL.getCodec()));
+	}
+}
@@ -0,0 +1,51 @@
+package de.bright_side.beam;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class TextEncodingOutputStreamTest {
+
+	@Test
+	public void write_hexSameAsByteArrayToHexString() throws Exception {
+		byte[] data = TestUtil.byteArrayFromRange(-128, 127);
+		StringWriter writer = new StringWriter();
+		TextEncodingOutputStream stream = new TextEncodingOutputStream(writer, BeamTextEncoding.HEX.getCodec());
+
+		stream.write(data[0]);
+		stream.write(data, 1, 100);
+		stream.write(data, 101, data.length - 101);
+		stream.close();
+
+		assertEquals(BeamUtil.byteArrayToHexString(data), writer.toString());
+	}
+
+	@Test
+	public void write_piecesSameAsEncodeToString() throws Exception {
+		byte[] data = createData(10001);
+		for (BeamTextEncoding encoding: BeamTextEncoding.values()) {
+			StringWriter writer = new StringWriter();
+			TextEncodingOutputStream stream = new TextEncodingOutputStream(writer, encoding.getCodec());
+
+			//: pieces that do not fit the groups of the encodings
+			stream.write(data[0]);
+			stream.write(data, 1, 2);
+			stream.write(data, 3, 5000);
+			stream.flush();
+			stream.write(data, 5003, data.length - 5003);
+			stream.close();
+
+			assertEquals(encoding.getCodec().encodeToString(data), writer.toString());
+		}
+	}
+
+	private byte[] createData(int length) {
+		byte[] result = new byte[length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (byte)(i * 7);
+		}
+		return result;
+	}
+}